@@ -0,0 +1,107 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * Distance kernels over many points at once.
+ *
+ * Points are given as structure-of-arrays columns: latitudes and longitudes
+ * in radians and the cosines of the latitudes, each in its own double[], so
+ * a batch streams through three flat arrays instead of chasing a pointer to
+ * a Location per point. That memory layout is where the speedup comes from;
+ * the loops still call Math.sin and Math.asin once per point, so they are
+ * not vectorized. The results are bit-for-bit the same as
+ * Distances.haversine and Distances.rank.
+ */
+public class BatchDistances {
+    private BatchDistances() {
+    }
+
+    /**
+     * Computes the rank (see Distances.rank) of the distance from one point
+     * to each point in [from, to).
+     * @param lat the latitude of the point, in radians
+     * @param lon the longitude of the point, in radians
+     * @param cosLat the cosine of lat
+     * @param lats the latitudes of the other points, in radians
+     * @param lons the longitudes of the other points, in radians
+     * @param cosLats the cosines of lats
+     * @param from the first point of the batch
+     * @param to one past the last point of the batch
+     * @param out where to write the rank for point i, at out[i - from]
+     */
+    public static void ranks(double lat, double lon, double cosLat, double[] lats, double[] lons, double[] cosLats,
+                             int from, int to, double[] out) {
+        for (int i = from; i < to; i++) {
+            double sinLat = Math.sin((lats[i] - lat) / 2);
+            double sinLon = Math.sin((lons[i] - lon) / 2);
+            out[i - from] = Math.min(1.0, sinLat * sinLat + sinLon * sinLon * cosLats[i] * cosLat);
+        }
+    }
+
+    /**
+     * Computes the great-circle distance from one point to each point in
+     * [from, to).
+     * @param lat the latitude of the point, in radians
+     * @param lon the longitude of the point, in radians
+     * @param cosLat the cosine of lat
+     * @param lats the latitudes of the other points, in radians
+     * @param lons the longitudes of the other points, in radians
+     * @param cosLats the cosines of lats
+     * @param from the first point of the batch
+     * @param to one past the last point of the batch
+     * @param out where to write the distance in feet to point i, at out[i - from]
+     */
+    public static void distances(double lat, double lon, double cosLat, double[] lats, double[] lons, double[] cosLats,
+                                 int from, int to, double[] out) {
+        ranks(lat, lon, cosLat, lats, lons, cosLats, from, to, out);
+        for (int i = 0; i < to - from; i++) {
+            out[i] = 2 * Location.EARTH_RAD_FT * Math.asin(Math.sqrt(out[i]));
+        }
+    }
+
+    /**
+     * Computes the great-circle distance between each pair of consecutive
+     * points in [0, n), such as the edges along a road.
+     * @param lats the latitudes of the points, in radians
+     * @param lons the longitudes of the points, in radians
+     * @param cosLats the cosines of lats
+     * @param n the number of points
+     * @param out where to write the distance in feet from point i to point i + 1, at out[i]
+     */
+    public static void consecutive(double[] lats, double[] lons, double[] cosLats, int n, double[] out) {
+        for (int i = 0; i + 1 < n; i++) {
+            double sinLat = Math.sin((lats[i + 1] - lats[i]) / 2);
+            double sinLon = Math.sin((lons[i + 1] - lons[i]) / 2);
+            double rank = Math.min(1.0, sinLat * sinLat + sinLon * sinLon * cosLats[i] * cosLats[i + 1]);
+            out[i] = 2 * Location.EARTH_RAD_FT * Math.asin(Math.sqrt(rank));
+        }
+    }
+
+    /**
+     * Returns the point in [from, to) closest to one point, by a brute force
+     * scan. Ties go to the first point.
+     * @param lat the latitude of the point, in radians
+     * @param lon the longitude of the point, in radians
+     * @param cosLat the cosine of lat
+     * @param lats the latitudes of the other points, in radians
+     * @param lons the longitudes of the other points, in radians
+     * @param cosLats the cosines of lats
+     * @param from the first point of the batch
+     * @param to one past the last point of the batch
+     * @return the closest point, or -1 if the batch is empty
+     */
+    public static int nearest(double lat, double lon, double cosLat, double[] lats, double[] lons, double[] cosLats,
+                              int from, int to) {
+        int best = -1;
+        double bestRank = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double sinLat = Math.sin((lats[i] - lat) / 2);
+            double sinLon = Math.sin((lons[i] - lon) / 2);
+            double rank = Math.min(1.0, sinLat * sinLat + sinLon * sinLon * cosLats[i] * cosLat);
+            if (rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+}
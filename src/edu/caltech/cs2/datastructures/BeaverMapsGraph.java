@@ -1,10 +1,11 @@
 package edu.caltech.cs2.datastructures;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.IDictionary;
-import edu.caltech.cs2.interfaces.IPriorityQueue;
+import edu.caltech.cs2.interfaces.IDictionaryFactory;
 import edu.caltech.cs2.interfaces.ISet;
 
 import java.io.File;
@@ -15,13 +16,36 @@ import java.util.Iterator;
 public class BeaverMapsGraph extends Graph<Long, Double> {
     private static JsonParser JSON_PARSER = new JsonParser();
 
-    private IDictionary<Long, Location> ids;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private LongIntDictionary ids;
+    private LocationStore locations;
     private ISet<Location> buildings;
+    private CSRGraph snapshot;
+    private RoutingEngine engine;
+    private KdTree buildingIndex;
+    private IDictionary<String, KdTree> categoryIndex;
+    private GridIndex grid;
+    private GridIndex buildingGrid;
+    private SegmentRTree roads;
+    private CSRGraph.Order vertexOrder = CSRGraph.Order.HILBERT;
+    private RoutingEngine.Queue queue = RoutingEngine.Queue.HEAP;
+    private double gridCellSize = GridIndex.DEFAULT_CELL_SIZE_FT;
 
     public BeaverMapsGraph() {
-        super();
-        this.buildings = new ChainingHashSet<>();
-        this.ids = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        this(ChainingHashDictionary::withMoveToFrontChains);
+    }
+
+    /**
+     * Creates an empty map whose vertex table, adjacency lists and set of
+     * buildings are dictionaries made by dictionaries.
+     * @param dictionaries the factory for the map's dictionaries
+     */
+    public BeaverMapsGraph(IDictionaryFactory dictionaries) {
+        super(dictionaries);
+        this.buildings = ISet.backedBy(dictionaries);
+        this.ids = new LongIntDictionary();
+        this.locations = new LocationStore();
     }
 
     /**
@@ -32,48 +56,96 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @param roadsFileName the roads filename
      */
     public BeaverMapsGraph(String buildingsFileName, String waypointsFileName, String roadsFileName) {
-        this();
+        this(buildingsFileName, waypointsFileName, roadsFileName, ChainingHashDictionary::withMoveToFrontChains);
+    }
+
+    /**
+     * Reads in buildings, waypoints, and roads file into a graph whose
+     * dictionaries are made by dictionaries.
+     * @param buildingsFileName the buildings filename
+     * @param waypointsFileName the waypoints filename
+     * @param roadsFileName the roads filename
+     * @param dictionaries the factory for the map's dictionaries
+     */
+    public BeaverMapsGraph(String buildingsFileName, String waypointsFileName, String roadsFileName,
+                           IDictionaryFactory dictionaries) {
+        this(dictionaries);
 
         JsonElement bs = fromFile(buildingsFileName);
         for (JsonElement b : bs.getAsJsonArray()) {
             Location loc = new Location(b.getAsJsonObject());
-            this.ids.put(loc.id, loc);
+            this.putLocation(loc);
             this.buildings.add(loc);
             this.addVertex(loc.id);
         }
 
+        // waypoints go straight into the location store without ever becoming Location objects
         bs = fromFile(waypointsFileName);
         for (JsonElement b : bs.getAsJsonArray()) {
-            Location loc = new Location(b.getAsJsonObject());
-            this.ids.put(loc.id, loc);
-            this.addVertex(loc.id);
+            JsonObject e = b.getAsJsonObject();
+            long id = Long.parseLong(e.get("id").getAsString());
+            int slot = this.ids.getOrDefault(id, -1);
+            if (slot < 0) {
+                this.ids.putLong(id, this.locations.add(e));
+            } else {
+                this.locations.set(slot, e);
+            }
+            this.addVertex(id);
         }
 
-        long previous = -1;
+        // each road's nodes go into columns so its edge weights are computed in one batch
+        long[] nodes = new long[DEFAULT_CAPACITY];
+        double[] lats = new double[DEFAULT_CAPACITY];
+        double[] lons = new double[DEFAULT_CAPACITY];
+        double[] cosLats = new double[DEFAULT_CAPACITY];
+        double[] weights = new double[DEFAULT_CAPACITY];
         bs = fromFile(roadsFileName);
         Iterator bsIter = bs.getAsJsonArray().iterator();
         while (bsIter.hasNext()) {
             JsonElement b = (JsonElement) bsIter.next();
             Iterator bIter = b.getAsJsonArray().iterator();
+            int n = 0;
             while (bIter.hasNext()) {
                 long current = ((JsonElement) bIter.next()).getAsLong();
-
-                if (previous != -1) {
-                    Location prev = this.getLocationByID(previous);
-                    Location curr = this.getLocationByID(current);
-
-                    Double dist = Location.getDistance(prev.lat, prev.lon, curr.lat, curr.lon);
-
-                    this.addUndirectedEdge(previous, current, dist);
+                if (n == nodes.length) {
+                    nodes = grow(nodes);
+                    lats = grow(lats);
+                    lons = grow(lons);
+                    cosLats = grow(cosLats);
+                    weights = grow(weights);
                 }
-                previous = current;
+                int slot = this.ids.getOrDefault(current, -1);
+                nodes[n] = current;
+                lats[n] = Math.toRadians(this.locations.lat(slot));
+                lons[n] = Math.toRadians(this.locations.lon(slot));
+                cosLats[n] = Math.cos(lats[n]);
+                n++;
+            }
 
+            BatchDistances.consecutive(lats, lons, cosLats, n, weights);
+            for (int i = 0; i + 1 < n; i++) {
+                this.addUndirectedEdge(nodes[i], nodes[i + 1], weights[i]);
             }
-            previous = -1;
         }
 
     }
 
+    private static long[] grow(long[] a) {
+        long[] bigger = new long[a.length * 2];
+        for (int i = 0; i < a.length; i++) {
+            bigger[i] = a[i];
+        }
+        return bigger;
+    }
+
+    private static double[] grow(double[] a) {
+        double[] bigger = new double[a.length * 2];
+        for (int i = 0; i < a.length; i++) {
+            bigger[i] = a[i];
+        }
+        return bigger;
+    }
+
     /**
      * Returns a deque of all the locations with the name locName.
      * @param locName the name of the locations to return
@@ -97,10 +169,22 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return the location identified by id
      */
     public Location getLocationByID(long id) {
-        if (this.ids.get(id) == null) {
-            System.out.println();
+        int slot = this.ids.getOrDefault(id, -1);
+        return slot >= 0 ? this.locations.location(slot) : null;
+    }
+
+    /**
+     * Stores loc in the slot for its id, assigning the next free slot
+     * if its id has not been seen before.
+     * @param loc the location to store
+     */
+    private void putLocation(Location loc) {
+        int slot = this.ids.getOrDefault(loc.id, -1);
+        if (slot < 0) {
+            this.ids.putLong(loc.id, this.locations.add(loc));
+        } else {
+            this.locations.set(slot, loc);
         }
-        return this.ids.get(id);
     }
 
     /**
@@ -112,11 +196,83 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
         if (this.vertices().contains(n.id)){
             return false;
         }
-        this.ids.put(n.id, n);
+        this.putLocation(n);
         this.addVertex(n.id);
         return true;
     }
 
+    @Override
+    public boolean addVertex(Long vertex) {
+        this.snapshot = null;
+        return super.addVertex(vertex);
+    }
+
+    @Override
+    public boolean addEdge(Long src, Long dest, Double e) {
+        this.snapshot = null;
+        return super.addEdge(src, dest, e);
+    }
+
+    @Override
+    public boolean addUndirectedEdge(Long src, Long dest, Double e) {
+        this.snapshot = null;
+        return super.addUndirectedEdge(src, dest, e);
+    }
+
+    @Override
+    public boolean removeEdge(Long src, Long dest) {
+        this.snapshot = null;
+        return super.removeEdge(src, dest);
+    }
+
+    /**
+     * Returns a read-only CSR snapshot of this map, building it if the map
+     * has changed since the last snapshot was taken. Queries run against
+     * this snapshot, so it should be taken once loading is finished.
+     * @return a snapshot of the current vertices and edges of this map
+     */
+    public CSRGraph freeze() {
+        if (this.snapshot == null) {
+            this.snapshot = new CSRGraph(this, this.locations, this.vertexOrder);
+            this.engine = new RoutingEngine(this.snapshot, this.queue);
+            this.buildingIndex = new KdTree(this.snapshot, this.snapshot.buildings);
+            this.categoryIndex = KdTree.byCategory(this.snapshot);
+            this.grid = new GridIndex(this.snapshot, this.gridCellSize);
+            this.buildingGrid = new GridIndex(this.snapshot, this.snapshot.buildings, this.gridCellSize);
+            this.roads = new SegmentRTree(this.snapshot);
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Sets how the vertices of the next snapshot are numbered, dropping the
+     * current snapshot.
+     * @param order how to number the vertices
+     */
+    public void useVertexOrder(CSRGraph.Order order) {
+        this.vertexOrder = order;
+        this.snapshot = null;
+    }
+
+    /**
+     * Sets the worklist the routing engine searches with, dropping the
+     * current snapshot.
+     * @param queue the worklist for searches
+     */
+    public void useQueue(RoutingEngine.Queue queue) {
+        this.queue = queue;
+        this.snapshot = null;
+    }
+
+    /**
+     * Returns the routing engine for the current snapshot of this map.
+     * @return the routing engine for this map
+     */
+    public RoutingEngine router() {
+        this.freeze();
+        return this.engine;
+    }
+
     /**
      * Returns the closest building to the location (lat, lon)
      * @param lat the latitude of the location to search near
@@ -124,16 +280,136 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return the building closest to (lat, lon)
      */
     public Location getClosestBuilding(double lat, double lon) {
-        MinFourHeap heap = new MinFourHeap();
-        for (Location loc : buildings) {
-            IPriorityQueue.PQElement temp = new IPriorityQueue.PQElement(loc, loc.getDistance(lat, lon));
-            heap.enqueue(temp);
+        CSRGraph g = this.freeze();
+        int v = this.buildingIndex.nearest(lat, lon);
+        return v < 0 ? null : g.location(v);
+    }
+
+    /**
+     * Returns the k buildings closest to the location (lat, lon), closest
+     * first, optionally only those whose amenity or shop tag is filter.
+     * @param lat the latitude of the location to search near
+     * @param lon the longitude of the location to search near
+     * @param k the number of buildings to return
+     * @param filter the amenity or shop tag to match, ignoring case, or null for any building
+     * @return the k closest matching buildings, or all of them if there are fewer than k
+     */
+    public IDeque<Location> kNearest(double lat, double lon, int k, String filter) {
+        CSRGraph g = this.freeze();
+        IDeque<Location> locs = new LinkedDeque<>();
+        KdTree index = filter == null ? this.buildingIndex : this.categoryIndex.get(filter.toLowerCase());
+        if (index != null) {
+            for (int v : index.nearest(lat, lon, k)) {
+                locs.addBack(g.location(v));
+            }
         }
+        return locs;
+    }
 
-        if (heap.size() == 0) {
-            return null;
+    /**
+     * Returns every building inside the box with the given corners.
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @return the buildings inside the box, edges included
+     */
+    public IDeque<Location> inBox(double minLat, double minLon, double maxLat, double maxLon) {
+        return this.inBox(minLat, minLon, maxLat, maxLon, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit buildings inside the box with the given corners.
+     * Only the buildings returned are looked up, so a box over the whole map
+     * costs no more than a small one.
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @param limit the most buildings to return
+     * @return up to limit buildings inside the box, edges included
+     */
+    public IDeque<Location> inBox(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        CSRGraph g = this.freeze();
+        IDeque<Location> locs = new LinkedDeque<>();
+        for (int v : this.buildingIndex.inBox(minLat, minLon, maxLat, maxLon, limit)) {
+            locs.addBack(g.location(v));
         }
-        return (Location) heap.dequeue().data;
+        return locs;
+    }
+
+    /**
+     * Returns every location whose straight-line distance from (lat, lon)
+     * is less than radius.
+     * @param lat the latitude of the center
+     * @param lon the longitude of the center
+     * @param radius the radius to search, in feet
+     * @return the locations within radius of (lat, lon)
+     */
+    public IDeque<Location> nearby(double lat, double lon, double radius) {
+        CSRGraph g = this.freeze();
+        IDeque<Location> locs = new LinkedDeque<>();
+        for (int v : this.grid.within(lat, lon, radius)) {
+            locs.addBack(g.location(v));
+        }
+        return locs;
+    }
+
+    /**
+     * Returns every building whose straight-line distance from (lat, lon)
+     * is less than radius. The buildings have a grid of their own, so the
+     * work done grows with the buildings found and not with the waypoints
+     * around them.
+     * @param lat the latitude of the center
+     * @param lon the longitude of the center
+     * @param radius the radius to search, in feet
+     * @return the buildings within radius of (lat, lon)
+     */
+    public IDeque<Location> nearbyBuildings(double lat, double lon, double radius) {
+        CSRGraph g = this.freeze();
+        IDeque<Location> locs = new LinkedDeque<>();
+        for (int v : this.buildingGrid.within(lat, lon, radius)) {
+            locs.addBack(g.location(v));
+        }
+        return locs;
+    }
+
+    /**
+     * Rebuilds the grids used by nearby and nearbyBuildings with cells of
+     * the given size. Smaller cells fit small radii more tightly; larger
+     * cells mean fewer cells to visit for large radii.
+     * @param cellSize the side length of a grid cell, in feet
+     */
+    public void useGridCellSize(double cellSize) {
+        this.freeze();
+        this.grid = new GridIndex(this.snapshot, cellSize);
+        this.buildingGrid = new GridIndex(this.snapshot, this.snapshot.buildings, cellSize);
+        this.gridCellSize = cellSize;
+    }
+
+    /**
+     * Returns the point on a road closest to the location (lat, lon), where
+     * a road is an edge between two locations that are not buildings.
+     * @param lat the latitude of the location to snap
+     * @param lon the longitude of the location to snap
+     * @return the closest point on a road, or null if there are no roads
+     */
+    public RoadSnap snapToRoad(double lat, double lon) {
+        this.freeze();
+        return this.roads.nearest(lat, lon);
+    }
+
+    /**
+     * Returns a shortest path from the point on a road closest to (lat, lon)
+     * to target. The path starts at the snapped point, which has id -1.
+     * @param lat the latitude to start near
+     * @param lon the longitude to start near
+     * @param target the location to end the path at
+     * @return a shortest path from the snapped point to target, or null if there is none
+     */
+    public IDeque<Location> routeFromPoint(double lat, double lon, Location target) {
+        RoadSnap snap = this.snapToRoad(lat, lon);
+        return snap == null ? null : this.router().shortestPath(snap, target);
     }
 
     /**
@@ -144,25 +420,32 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return
      */
     public ISet<Location> dfs(Location start, double threshold) {
+        CSRGraph g = this.freeze();
         ISet<Location> locs = new ChainingHashSet<Location>();
-        LinkedDeque<Long>  worklist = new LinkedDeque<>();
-        ChainingHashDictionary<Long,Boolean> visited = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-
-        worklist.addFront(start.id);
-
-        while (!worklist.isEmpty()){
-            Long curr = worklist.removeFront();
-            visited.put(curr, true);
-            if (start.getDistance(ids.get(curr)) <= threshold){
-                locs.add(ids.get(curr));
-                ISet<Long>  neighbors = this.neighbors(curr);
-                for (Long l : neighbors){
-                    if (!visited.containsKey(l) ){
-                        worklist.addFront(l);
+        int s = g.indexOf(start.id);
+        if (s < 0) {
+            return locs;
+        }
+
+        int[] worklist = new int[g.size()];
+        boolean[] visited = new boolean[g.size()];
+        int top = 0;
+        worklist[top++] = s;
+        visited[s] = true;
+
+        while (top > 0) {
+            int curr = worklist[--top];
+            if (Distances.haversine(start.latRadians, start.lonRadians, start.cosLat,
+                    g.latRadians[curr], g.lonRadians[curr], g.cosLat[curr]) <= threshold) {
+                locs.add(g.location(curr));
+                for (int e = g.offsets[curr]; e < g.offsets[curr + 1]; e++) {
+                    int u = g.targets[e];
+                    if (!visited[u]) {
+                        visited[u] = true;
+                        worklist[top++] = u;
                     }
                 }
             }
-
         }
         return locs;
     }
@@ -176,6 +459,17 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
         return this.buildings;
     }
 
+    /**
+     * Freezes the vertex table, the adjacency lists and the set of buildings,
+     * for a map that is done loading. The current snapshot is kept, and
+     * queries keep working, but the map can no longer be changed.
+     */
+    @Override
+    public void freezeDictionaries() {
+        super.freezeDictionaries();
+        this.buildings.freeze();
+    }
+
     /**
      * Returns a shortest path (i.e., a deque of vertices) between the start
      * and target locations (including the start and target locations).
@@ -184,70 +478,114 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return a shortest path between start and target
      */
     public IDeque<Location> dijkstra(Location start, Location target) {
-        ChainingHashDictionary<Location, Double> shortestDist = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-        ChainingHashDictionary<Location, Location> previousNode = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-        ChainingHashDictionary<Location, Boolean> visited = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-        MinFourHeap<Long> worklist = new MinFourHeap<>(); //nodes, path length
-
-        //initializing
-        for (Long lID : ids) {
-            if (!buildings.contains(ids.get(lID)) || (lID.equals(start.id) || lID.equals(target.id))) {
-                if (lID.equals(start.id)) {
-                    shortestDist.put(ids.get(lID), 0.0);
-                } else {
-                    shortestDist.put(ids.get(lID), Double.MAX_VALUE);
-                }
+        return this.router().shortestPath(start, target);
+    }
 
-//                worklist.enqueue(new IPriorityQueue.PQElement<>(lID, shortestDist.get(ids.get(lID))));
-            }
-        }
+    /**
+     * Returns a shortest path between the start and target locations using
+     * A* search, with the straight-line distance to target as the heuristic.
+     * Finds paths of the same length as dijkstra while settling far fewer
+     * locations.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target
+     */
+    public IDeque<Location> aStar(Location start, Location target) {
+        return this.router().shortestPath(start, target, RoutingEngine.Algorithm.ASTAR);
+    }
 
-        worklist.enqueue(new IPriorityQueue.PQElement<>(start.id, 0));
-
-        //going through
-        while (worklist.size() != 0) {
-            IPriorityQueue.PQElement<Long> v = worklist.dequeue();
-            Location vLoc = ids.get(v.data);
-
-//            if (vLoc.equals(target)) {
-//                break;
-//            }
-
-            if (!visited.containsKey(vLoc)) {
-                for (Long u : this.neighbors(v.data)) {
-                    Location uLoc = ids.get(u);
-                    if (!buildings.contains(uLoc)) {
-                        Double newDistance = shortestDist.get(vLoc) + this.adjacent(v.data, u); //previous node + edge weight
-
-                        if (newDistance < shortestDist.get(uLoc)) {
-                            shortestDist.put(uLoc, newDistance);
-                            try {
-                                worklist.enqueue(new IPriorityQueue.PQElement<>(u, newDistance));
-                            } catch (Exception e) {
-                                worklist.decreaseKey(new IPriorityQueue.PQElement<>(u, newDistance));
-                            }
-                            previousNode.put(uLoc, vLoc);
-                        }
-                    }
-                }
-            }
-            visited.put(vLoc, true);
-        }
+    /**
+     * Returns a shortest path between the start and target locations by
+     * searching forwards from start and backwards from target at once.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target
+     */
+    public IDeque<Location> bidirectionalDijkstra(Location start, Location target) {
+        return this.router().shortestPath(start, target, RoutingEngine.Algorithm.BIDIRECTIONAL);
+    }
 
-        Location curr = target;
-        LinkedDeque<Location> path = new LinkedDeque<>();
-        while (curr != null && !curr.equals(start)) {
-            path.addFront(curr);
-            curr = previousNode.get(curr);
-        }
+    /**
+     * Returns a shortest path between the start and target locations using
+     * the contraction hierarchy of this map, which is built on first use.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target
+     */
+    public IDeque<Location> contractionHierarchyPath(Location start, Location target) {
+        return this.router().shortestPath(start, target, RoutingEngine.Algorithm.CH);
+    }
 
-        if (curr != null && curr.equals(start)) {
-            path.addFront(start);
-            return path;
-        }
+    /**
+     * Returns a shortest path between the start and target locations using
+     * A* with landmark lower bounds (ALT). The landmarks are picked on first
+     * use unless a table has been set with useLandmarks.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target
+     */
+    public IDeque<Location> altPath(Location start, Location target) {
+        return this.router().shortestPath(start, target, RoutingEngine.Algorithm.ALT);
+    }
 
-        return null;
+    /**
+     * Picks count landmarks for ALT queries on the current snapshot.
+     * @param count the number of landmarks
+     * @param selection how to pick the landmarks
+     * @return the new landmark table
+     */
+    public LandmarkTable useLandmarks(int count, LandmarkTable.Selection selection) {
+        LandmarkTable table = new LandmarkTable(this.freeze(), count, selection, 0);
+        this.router().setLandmarks(table);
+        return table;
+    }
 
+    /**
+     * Returns a shortest path between the start and target locations
+     * found with the given algorithm.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @param algorithm the search strategy to use
+     * @return a shortest path between start and target
+     */
+    public IDeque<Location> route(Location start, Location target, RoutingEngine.Algorithm algorithm) {
+        return this.router().shortestPath(start, target, algorithm);
+    }
+
+    /**
+     * Returns the length of a shortest path between the start and target
+     * locations without building the path. Answered from hub labels, which
+     * are built on the first call.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return the length of a shortest path, or infinity if there is none
+     */
+    public double distance(Location start, Location target) {
+        return this.router().distance(start, target);
+    }
+
+    /**
+     * Returns the lengths of shortest paths from every source to every
+     * target, computed in one pass per source rather than one search per pair.
+     * @param sources the locations to start paths from
+     * @param targets the locations to end paths at
+     * @return the matrix whose entry [i][j] is the distance from sources[i]
+     *         to targets[j], or infinity if there is no path
+     */
+    public double[][] distanceMatrix(Location[] sources, Location[] targets) {
+        return this.router().distanceMatrix(sources, targets);
+    }
+
+    /**
+     * Returns every location within budget of start along the road network,
+     * in order of distance. Unlike dfs, which bounds the straight-line
+     * distance, this measures the length of the route to each location.
+     * @param start the location to search from
+     * @param budget the largest route length to include
+     * @return the locations within budget of start, starting with start itself
+     */
+    public IDeque<Location> isochrone(Location start, double budget) {
+        return this.router().isochrone(start, budget);
     }
 
     /**
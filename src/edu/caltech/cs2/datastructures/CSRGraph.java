@@ -0,0 +1,316 @@
+package edu.caltech.cs2.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A read-only compressed sparse row snapshot of a BeaverMapsGraph.
+ *
+ * Vertices are renumbered to dense indices 0..size()-1. The outgoing edges of
+ * vertex v are stored in targets[offsets[v]..offsets[v + 1]) with the matching
+ * weights in the same range of weights. The incoming edges are stored the
+ * same way in the reverse arrays, for searches that run backwards from a
+ * target. The OSM ids and coordinates are kept in side tables indexed by
+ * vertex; Location objects are only built from the LocationStore when
+ * location(v) is called.
+ *
+ * The snapshot keeps its own map from OSM ids to vertices, so vertices added
+ * to the graph later do not change indexOf(), and the vertices, edges and
+ * coordinates never change once it is built. The LocationStore is shared
+ * with the graph rather than copied, so location(v) sees the new names of a
+ * location that is stored again under the same id.
+ *
+ * The snapshot is built alongside the boxed adjacency of the graph, which the
+ * graph keeps for later edits and rebuilds, so while a snapshot is alive the
+ * edges are held twice. The arrays cost about 12 bytes per directed edge in
+ * each direction and 80 to 100 bytes per vertex including the id map, far
+ * less than the dictionaries of the graph itself.
+ *
+ * With HILBERT order, vertices are numbered along a Hilbert curve through
+ * their coordinates and each vertex's edges are sorted by target, so vertices
+ * that are close on the map are close in every array. A search mostly moves
+ * between nearby vertices, so it then touches far fewer cache lines.
+ */
+public class CSRGraph {
+    private static final int HILBERT_BITS = 15;
+
+    /**
+     * How vertices are numbered.
+     */
+    public enum Order {
+        /** Vertices keep the order their locations were added in. */
+        INSERTION,
+        /** Vertices are numbered along a Hilbert curve through their coordinates. */
+        HILBERT
+    }
+
+    private final LongIntDictionary index;
+    private final LocationStore store;
+    private final int[] slotOfVertex;
+    final long[] ids;
+    final double[] lat;
+    final double[] lon;
+    // the coordinates in radians and the cosine of the latitude, for the distance kernels
+    final double[] latRadians;
+    final double[] lonRadians;
+    final double[] cosLat;
+    final boolean[] building;
+    final int[] buildings;
+
+    final int[] offsets;
+    final int[] targets;
+    final double[] weights;
+
+    final int[] reverseOffsets;
+    final int[] reverseTargets;
+    final double[] reverseWeights;
+
+    /**
+     * Builds a snapshot of the current vertices and edges of graph, numbering
+     * the locations in store in the given order.
+     * @param graph the graph to snapshot
+     * @param store the locations of graph, indexed by slot
+     * @param order how to number the vertices
+     */
+    CSRGraph(BeaverMapsGraph graph, LocationStore store, Order order) {
+        int n = store.size();
+        this.store = store;
+        this.slotOfVertex = order == Order.HILBERT ? hilbertOrder(store) : identity(n);
+        this.index = new LongIntDictionary(n);
+        for (int v = 0; v < n; v++) {
+            this.index.putLong(store.id(this.slotOfVertex[v]), v);
+        }
+
+        this.ids = new long[n];
+        this.lat = new double[n];
+        this.lon = new double[n];
+        this.latRadians = new double[n];
+        this.lonRadians = new double[n];
+        this.cosLat = new double[n];
+        this.building = new boolean[n];
+        int buildingCount = 0;
+        for (int v = 0; v < n; v++) {
+            int slot = this.slotOfVertex[v];
+            this.ids[v] = store.id(slot);
+            this.lat[v] = store.lat(slot);
+            this.lon[v] = store.lon(slot);
+            this.latRadians[v] = Math.toRadians(this.lat[v]);
+            this.lonRadians[v] = Math.toRadians(this.lon[v]);
+            this.cosLat[v] = Math.cos(this.latRadians[v]);
+            // a Location is equal to any other with the same id, so a bare one is enough to probe the set
+            this.building[v] = graph.getBuildings().contains(new Location(this.ids[v]));
+            if (this.building[v]) {
+                buildingCount++;
+            }
+        }
+
+        this.buildings = new int[buildingCount];
+        buildingCount = 0;
+        for (int v = 0; v < n; v++) {
+            if (this.building[v]) {
+                this.buildings[buildingCount] = v;
+                buildingCount++;
+            }
+        }
+
+        this.offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            int degree = 0;
+            if (graph.vertices().contains(this.ids[v])) {
+                for (long u : graph.neighbors(this.ids[v])) {
+                    if (this.indexOf(u) >= 0) {
+                        degree++;
+                    }
+                }
+            }
+            this.offsets[v + 1] = this.offsets[v] + degree;
+        }
+
+        this.targets = new int[this.offsets[n]];
+        this.weights = new double[this.offsets[n]];
+        for (int v = 0; v < n; v++) {
+            if (this.degree(v) == 0) {
+                continue;
+            }
+            int e = this.offsets[v];
+            for (long u : graph.neighbors(this.ids[v])) {
+                int target = this.indexOf(u);
+                if (target >= 0) {
+                    this.targets[e] = target;
+                    this.weights[e] = graph.adjacent(this.ids[v], u);
+                    e++;
+                }
+            }
+            this.sortEdges(this.offsets[v], e);
+        }
+
+        this.reverseOffsets = new int[n + 1];
+        for (int e = 0; e < this.targets.length; e++) {
+            this.reverseOffsets[this.targets[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            this.reverseOffsets[v + 1] += this.reverseOffsets[v];
+        }
+
+        this.reverseTargets = new int[this.targets.length];
+        this.reverseWeights = new double[this.targets.length];
+        int[] next = new int[n];
+        for (int v = 0; v < n; v++) {
+            next[v] = this.reverseOffsets[v];
+        }
+        for (int v = 0; v < n; v++) {
+            for (int e = this.offsets[v]; e < this.offsets[v + 1]; e++) {
+                int u = this.targets[e];
+                this.reverseTargets[next[u]] = v;
+                this.reverseWeights[next[u]] = this.weights[e];
+                next[u]++;
+            }
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the slots 0..n-1 sorted by the position of their location along
+     * a Hilbert curve through the bounding box of all locations.
+     */
+    private static int[] hilbertOrder(LocationStore store) {
+        int n = store.size();
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minLat = Math.min(minLat, store.lat(i));
+            minLon = Math.min(minLon, store.lon(i));
+            maxLat = Math.max(maxLat, store.lat(i));
+            maxLon = Math.max(maxLon, store.lon(i));
+        }
+
+        int side = 1 << HILBERT_BITS;
+        double latScale = maxLat > minLat ? (side - 1) / (maxLat - minLat) : 0;
+        double lonScale = maxLon > minLon ? (side - 1) / (maxLon - minLon) : 0;
+        // the curve position goes in the high bits so sorting the keys sorts the slots
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int x = (int) ((store.lon(i) - minLon) * lonScale);
+            int y = (int) ((store.lat(i) - minLat) * latScale);
+            keys[i] = (hilbertIndex(side, x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = (int) keys[i];
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the distance along the Hilbert curve filling a side x side grid
+     * to the cell (x, y).
+     */
+    private static long hilbertIndex(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve inside it has the standard orientation
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Sorts the edges in [start, end) by target.
+     */
+    private void sortEdges(int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            int target = this.targets[i];
+            double weight = this.weights[i];
+            int j = i - 1;
+            while (j >= start && this.targets[j] > target) {
+                this.targets[j + 1] = this.targets[j];
+                this.weights[j + 1] = this.weights[j];
+                j--;
+            }
+            this.targets[j + 1] = target;
+            this.weights[j + 1] = weight;
+        }
+    }
+
+    /**
+     * Returns the number of vertices in this snapshot.
+     * @return the number of vertices
+     */
+    public int size() {
+        return this.ids.length;
+    }
+
+    /**
+     * Returns the number of directed edges in this snapshot.
+     * @return the number of directed edges
+     */
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Returns the dense index of the vertex with the given OSM id.
+     * @param id the OSM id to look up
+     * @return the index of id, or -1 if id is not a vertex
+     */
+    public int indexOf(long id) {
+        return this.index.getOrDefault(id, -1);
+    }
+
+    /**
+     * Returns the OSM id of vertex v.
+     * @param v the vertex index
+     * @return the OSM id of v
+     */
+    public long id(int v) {
+        return this.ids[v];
+    }
+
+    /**
+     * Returns the Location of vertex v, built fresh from the LocationStore.
+     * @param v the vertex index
+     * @return the location of v
+     */
+    public Location location(int v) {
+        return this.store.location(this.slotOfVertex[v]);
+    }
+
+    /**
+     * Returns whether vertex v is a building.
+     * @param v the vertex index
+     * @return true if v is a building and false otherwise
+     */
+    public boolean isBuilding(int v) {
+        return this.building[v];
+    }
+
+    /**
+     * Returns the out-degree of vertex v.
+     * @param v the vertex index
+     * @return the number of outgoing edges of v
+     */
+    public int degree(int v) {
+        return this.offsets[v + 1] - this.offsets[v];
+    }
+}
@@ -7,11 +7,39 @@ import java.util.Iterator;
 import java.util.function.Supplier;
 
 
+/**
+ * A hash dictionary that keeps the keys of each bucket in a chain, which is
+ * itself a dictionary made by the supplier passed to the constructor.
+ *
+ * When the table fills up it grows to the next prime size (from the primes
+ * list, then to the first prime past double the size), but the chains are
+ * moved over incrementally: while oldTable is set, every put and remove
+ * moves the next MIGRATE_BUCKETS buckets of oldTable into hashTable.
+ * Buckets of oldTable below migrateIndex have been moved, so a key lives in
+ * oldTable exactly when its old bucket is at or past migrateIndex. Lookups
+ * never move anything.
+ *
+ * freeze() rebuilds the dictionary into a read-only form for maps that are
+ * only read once built: the keys and values are laid out bucket by bucket in
+ * two flat arrays, like the edges of a CSRGraph, with bucketStart[b] the index
+ * of the first key of bucket b. The chains are dropped, so lookups write
+ * nothing, even with self-organizing chains, and no chain objects are kept.
+ */
 public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
+    // moving two buckets per insert finishes before the new table fills up
+    private static final int MIGRATE_BUCKETS = 2;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
     private Supplier<IDictionary<K, V>> chain;
     private IDictionary<K,V>[] hashTable;
+    private IDictionary<K,V>[] oldTable;
+    private int migrateIndex;
     private int size;
     private int pindex;
+    // set once frozen, after which hashTable and oldTable are null
+    private Object[] frozenKeys;
+    private Object[] frozenValues;
+    private int[] bucketStart;
     private static final int[] primes = {2,5,11,23,47,97,197,397,797,1597,3203,6421,12853,25717,51437,102877, 205759, 411527};
 
     private class CHIterator<K> implements Iterator<K> {
@@ -38,16 +66,63 @@ public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
         this.size = 0;
         this.chain = chain;
         this.pindex = 0;
-        this.hashTable = new IDictionary[primes[pindex]];
+        this.hashTable = newTable(primes[pindex]);
+    }
+
+    /**
+     * Creates an empty dictionary with MoveToFrontDictionary chains, the
+     * default dictionary of this project. Usable as an IDictionaryFactory.
+     * @return an empty dictionary
+     */
+    public static <K, V> IDictionary<K, V> withMoveToFrontChains() {
+        return new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> IDictionary<K, V>[] newTable(int length) {
+        return (IDictionary<K, V>[]) new IDictionary<?, ?>[length];
+    }
+
+    private static int indexFor(Object key, int length) {
+        return Math.abs(key.hashCode() % length);
+    }
+
+    /**
+     * Returns the chain that holds key if it is present, which may be null.
+     */
+    private IDictionary<K, V> chainOf(K key) {
+        if (this.oldTable != null) {
+            int oldIndex = indexFor(key, this.oldTable.length);
+            if (oldIndex >= this.migrateIndex) {
+                return this.oldTable[oldIndex];
+            }
+        }
+        return this.hashTable[indexFor(key, this.hashTable.length)];
     }
 
+    /**
+     * Returns the index of key in frozenKeys, or -1 if key is not present.
+     */
+    private int frozenIndexOf(K key) {
+        int b = indexFor(key, this.bucketStart.length - 1);
+        for (int i = this.bucketStart[b]; i < this.bucketStart[b + 1]; i++) {
+            if (this.frozenKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V get(K key) {
-        if (containsKey(key)) {
-            return this.hashTable[Math.abs(key.hashCode() % hashTable.length)].get(key);
+        if (this.frozenKeys != null) {
+            int i = this.frozenIndexOf(key);
+            return i < 0 ? null : (V) this.frozenValues[i];
         }
-        return null;
+        IDictionary<K, V> bucket = this.chainOf(key);
+        return bucket == null ? null : bucket.get(key);
     }
 
 //    @Override
@@ -68,72 +143,206 @@ public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
 //    }
 
     public V remove(K key) {
-        if (containsKey(key)) {
-            size--;
+        this.checkNotFrozen();
+        this.migrate();
+        IDictionary<K, V> bucket = this.chainOf(key);
+        if (bucket == null) {
+            return null;
         }
-        int index = Math.abs(key.hashCode() % hashTable.length);
-        return hashTable[index].remove(key);
+        int before = bucket.size();
+        V old = bucket.remove(key);
+        if (bucket.size() < before) {
+            this.size--;
+        }
+        return old;
     }
 
+    /**
+     * Returns the size to grow a table of the given length to: the next
+     * prime in the list, and past the end of the list the first prime
+     * after twice the length.
+     */
+    private int nextCapacity(int length) {
+        if (this.pindex + 1 < primes.length) {
+            this.pindex++;
+            return primes[this.pindex];
+        }
+        if (length >= MAX_CAPACITY / 2) {
+            return MAX_CAPACITY;
+        }
+        int candidate = 2 * length + 1;
+        while (!isPrime(candidate)) {
+            candidate += 2;
+        }
+        return candidate;
+    }
+
+    private static boolean isPrime(int n) {
+        if (n % 2 == 0) {
+            return n == 2;
+        }
+        for (int d = 3; (long) d * d <= n; d += 2) {
+            if (n % d == 0) {
+                return false;
+            }
+        }
+        return n > 1;
+    }
+
+    /**
+     * Starts moving every chain into a larger table. Any move still in
+     * progress is finished first.
+     */
     private void expand(){
-        this.pindex++;
-        IDictionary<K,V>[] oldTable = this.hashTable;
-        IDictionary<K,V>[] newTable = new IDictionary[primes[pindex]];
-        this.hashTable = newTable;
-        this.size = 0;
+        if (this.hashTable.length >= MAX_CAPACITY) {
+            return;
+        }
+        while (this.oldTable != null) {
+            this.migrate();
+        }
+        this.oldTable = this.hashTable;
+        this.hashTable = newTable(this.nextCapacity(this.hashTable.length));
+        this.migrateIndex = 0;
+    }
 
-        for (int i = 0; i < oldTable.length; i++) {
-            if (oldTable[i] != null){
-                for (K key : oldTable[i]) {
-                    this.put(key, oldTable[i].get(key));
+    /**
+     * Moves the next MIGRATE_BUCKETS buckets of oldTable into hashTable,
+     * dropping oldTable once it is empty.
+     */
+    private void migrate() {
+        if (this.oldTable == null) {
+            return;
+        }
+        int end = Math.min(this.migrateIndex + MIGRATE_BUCKETS, this.oldTable.length);
+        for (int i = this.migrateIndex; i < end; i++) {
+            IDictionary<K, V> oldChain = this.oldTable[i];
+            if (oldChain != null) {
+                for (K key : oldChain) {
+                    int index = indexFor(key, this.hashTable.length);
+                    if (this.hashTable[index] == null) {
+                        this.hashTable[index] = this.chain.get();
+                    }
+                    this.hashTable[index].put(key, oldChain.get(key));
                 }
+                this.oldTable[i] = null;
             }
         }
+        this.migrateIndex = end;
+        if (this.migrateIndex == this.oldTable.length) {
+            this.oldTable = null;
+        }
     }
 
 
     @Override
     public V put(K key, V value) {
-        if (!containsKey(key)){
-            if ((this.size+1)/this.hashTable.length >= 1){
-                this.expand();
+        this.checkNotFrozen();
+        this.migrate();
+        IDictionary<K, V> bucket = this.chainOf(key);
+        if (bucket == null) {
+            bucket = this.chain.get();
+            if (this.oldTable != null && indexFor(key, this.oldTable.length) >= this.migrateIndex) {
+                this.oldTable[indexFor(key, this.oldTable.length)] = bucket;
+            } else {
+                this.hashTable[indexFor(key, this.hashTable.length)] = bucket;
             }
+        }
+
+        int before = bucket.size();
+        V old = bucket.put(key, value);
+        if (bucket.size() > before) {
             this.size++;
-            if (this.hashTable[Math.abs(key.hashCode() % hashTable.length)] == null){
-                this.hashTable[Math.abs(key.hashCode() % hashTable.length)] = this.chain.get();
-                this.hashTable[Math.abs(key.hashCode() % hashTable.length)].put(key, value);
-            }
-            else{
-                this.hashTable[Math.abs(key.hashCode() % hashTable.length)].put(key, value);
+            if (this.size >= this.hashTable.length) {
+                this.expand();
             }
-            return null;
         }
-        else {
-            V old = this.hashTable[Math.abs(key.hashCode() % hashTable.length)].get(key);
-            this.hashTable[Math.abs(key.hashCode() % hashTable.length)].put(key, value);
-            return old;
+        return old;
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozenKeys != null) {
+            throw new UnsupportedOperationException("Dictionary is frozen");
         }
+    }
 
+    /**
+     * Rebuilds this dictionary into its frozen form, with as many buckets as
+     * the smallest prime no less than its size. Afterwards put and remove
+     * throw UnsupportedOperationException. Freezing twice does nothing.
+     */
+    @Override
+    public void freeze() {
+        if (this.frozenKeys != null) {
+            return;
+        }
+        int buckets = Math.max(this.size, 2);
+        while (!isPrime(buckets)) {
+            buckets++;
+        }
+
+        Object[] keys = new Object[this.size];
+        Object[] values = new Object[this.size];
+        int[] bucketOf = new int[this.size];
+        int[] start = new int[buckets + 1];
+        int n = 0;
+        for (K key : this) {
+            keys[n] = key;
+            values[n] = this.get(key);
+            bucketOf[n] = indexFor(key, buckets);
+            start[bucketOf[n] + 1]++;
+            n++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+        }
+
+        // counting sort of the keys by bucket
+        this.frozenKeys = new Object[n];
+        this.frozenValues = new Object[n];
+        int[] next = new int[buckets];
+        System.arraycopy(start, 0, next, 0, buckets);
+        for (int i = 0; i < n; i++) {
+            int j = next[bucketOf[i]]++;
+            this.frozenKeys[j] = keys[i];
+            this.frozenValues[j] = values[i];
+        }
+        this.bucketStart = start;
+        this.hashTable = null;
+        this.oldTable = null;
+        this.chain = null;
     }
 
     @Override
     public boolean containsKey(K key) {
-        int bucketIndex = Math.abs(key.hashCode() % hashTable.length);
-        if (hashTable[bucketIndex] == null){
-            return false;
-        }
-        else {
-            return hashTable[bucketIndex].containsKey(key);
+        if (this.frozenKeys != null) {
+            return this.frozenIndexOf(key) >= 0;
         }
+        IDictionary<K, V> bucket = this.chainOf(key);
+        return bucket != null && bucket.containsKey(key);
     }
 
     @Override
     public boolean containsValue(V value) {
+        if (this.frozenKeys != null) {
+            for (Object v : this.frozenValues) {
+                if (value == null ? v == null : value.equals(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
         for (int i = 0; i < hashTable.length; i++){
             if (hashTable[i] != null && hashTable[i].containsValue(value)){
                 return true;
             }
         }
+        if (this.oldTable != null) {
+            for (int i = this.migrateIndex; i < this.oldTable.length; i++) {
+                if (this.oldTable[i] != null && this.oldTable[i].containsValue(value)) {
+                    return true;
+                }
+            }
+        }
         return false;
     }
 
@@ -143,24 +352,52 @@ public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public ICollection<K> keys() {
         ICollection<K> keySet = new LinkedDeque();
+        if (this.frozenKeys != null) {
+            for (Object key : this.frozenKeys) {
+                keySet.add((K) key);
+            }
+            return keySet;
+        }
         for (int i = 0; i < hashTable.length; i++){
             if (hashTable[i] != null){
                 ((LinkedDeque<K>) keySet).addAll(hashTable[i].keys());
             }
         }
+        if (this.oldTable != null) {
+            for (int i = this.migrateIndex; i < this.oldTable.length; i++) {
+                if (this.oldTable[i] != null) {
+                    ((LinkedDeque<K>) keySet).addAll(this.oldTable[i].keys());
+                }
+            }
+        }
         return keySet;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public ICollection<V> values() {
         ICollection<V> values = new LinkedDeque();
+        if (this.frozenKeys != null) {
+            for (Object value : this.frozenValues) {
+                values.add((V) value);
+            }
+            return values;
+        }
         for (int i = 0; i < hashTable.length; i++){
             if (hashTable[i] != null){
                 ((LinkedDeque<V>) values).addAll(hashTable[i].values());
             }
         }
+        if (this.oldTable != null) {
+            for (int i = this.migrateIndex; i < this.oldTable.length; i++) {
+                if (this.oldTable[i] != null) {
+                    ((LinkedDeque<V>) values).addAll(this.oldTable[i].values());
+                }
+            }
+        }
         return values;
     }
 
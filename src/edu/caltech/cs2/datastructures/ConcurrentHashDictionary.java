@@ -0,0 +1,221 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.ICollection;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A chained hash dictionary that many threads can read and write at once.
+ *
+ * Reads take no locks and write nothing. A lookup reads the current table from
+ * a volatile field and walks one bucket's chain. Chain nodes never change once
+ * published, except for their volatile values, so a reader always sees a whole
+ * chain. Writers lock one of STRIPES lock objects, chosen by the low bits of
+ * the key's hash. Table sizes are powers of two no smaller than STRIPES, so
+ * every key in a bucket shares a lock. Put adds a node at the head of its
+ * chain, and remove copies the nodes before the removed one into a new chain.
+ * Growing the table takes every lock and publishes a fresh copy, which readers
+ * still on the old table can keep using.
+ *
+ * Null keys are not supported. keys(), values() and iterator() walk a snapshot
+ * that may miss writes made while it is being taken.
+ */
+public class ConcurrentHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int STRIPES = 16;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double MAX_LOAD = 0.75;
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final int hash;
+        private volatile V value;
+        private final Node<K, V> next;
+
+        private Node(K key, int hash, V value, Node<K, V> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private final Object[] locks;
+    private final AtomicInteger size;
+
+    public ConcurrentHashDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold expectedSize keys without resizing.
+     * @param expectedSize the number of keys expected to be stored
+     */
+    public ConcurrentHashDictionary(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize && capacity < MAX_CAPACITY) {
+            capacity *= 2;
+        }
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+        this.size = new AtomicInteger();
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Object lockFor(int hash) {
+        return this.locks[hash & (STRIPES - 1)];
+    }
+
+    private static <K, V> Node<K, V> find(Node<K, V> node, Object key, int hash) {
+        while (node != null && (node.hash != hash || !node.key.equals(key))) {
+            node = node.next;
+        }
+        return node;
+    }
+
+    private Node<K, V> nodeOf(K key) {
+        int h = spread(key);
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        return find(tab.get(h & (tab.length() - 1)), key, h);
+    }
+
+    @Override
+    public V get(K key) {
+        Node<K, V> node = this.nodeOf(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return this.nodeOf(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int h = spread(key);
+        synchronized (this.lockFor(h)) {
+            AtomicReferenceArray<Node<K, V>> tab = this.table;
+            int i = h & (tab.length() - 1);
+            Node<K, V> head = tab.get(i);
+            Node<K, V> node = find(head, key, h);
+            if (node != null) {
+                V old = node.value;
+                node.value = value;
+                return old;
+            }
+            tab.set(i, new Node<>(key, h, value, head));
+        }
+        if (this.size.incrementAndGet() > this.table.length() * MAX_LOAD) {
+            this.resize(0);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int h = spread(key);
+        synchronized (this.lockFor(h)) {
+            AtomicReferenceArray<Node<K, V>> tab = this.table;
+            int i = h & (tab.length() - 1);
+            Node<K, V> head = tab.get(i);
+            Node<K, V> node = find(head, key, h);
+            if (node == null) {
+                return null;
+            }
+            Node<K, V> chain = node.next;
+            for (Node<K, V> n = head; n != node; n = n.next) {
+                chain = new Node<>(n.key, n.hash, n.value, chain);
+            }
+            tab.set(i, chain);
+            this.size.decrementAndGet();
+            return node.value;
+        }
+    }
+
+    /**
+     * Takes the locks from stripe onwards, one inside the next, and then
+     * doubles the table if it is still too full.
+     */
+    private void resize(int stripe) {
+        if (stripe < STRIPES) {
+            synchronized (this.locks[stripe]) {
+                this.resize(stripe + 1);
+            }
+            return;
+        }
+
+        AtomicReferenceArray<Node<K, V>> oldTable = this.table;
+        // another writer may have grown the table while this one waited
+        if (this.size.get() <= oldTable.length() * MAX_LOAD || oldTable.length() >= MAX_CAPACITY) {
+            return;
+        }
+        AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<>(oldTable.length() * 2);
+        int mask = newTable.length() - 1;
+        for (int i = 0; i < oldTable.length(); i++) {
+            for (Node<K, V> n = oldTable.get(i); n != null; n = n.next) {
+                int j = n.hash & mask;
+                newTable.set(j, new Node<>(n.key, n.hash, n.value, newTable.get(j)));
+            }
+        }
+        this.table = newTable;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        for (int i = 0; i < tab.length(); i++) {
+            for (Node<K, V> n = tab.get(i); n != null; n = n.next) {
+                V v = n.value;
+                if (value == null ? v == null : value.equals(v)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size.get();
+    }
+
+    @Override
+    public ICollection<K> keys() {
+        ICollection<K> keys = new LinkedDeque<>();
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        for (int i = 0; i < tab.length(); i++) {
+            for (Node<K, V> n = tab.get(i); n != null; n = n.next) {
+                keys.add(n.key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public ICollection<V> values() {
+        ICollection<V> values = new LinkedDeque<>();
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        for (int i = 0; i < tab.length(); i++) {
+            for (Node<K, V> n = tab.get(i); n != null; n = n.next) {
+                values.add(n.value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return this.keys().iterator();
+    }
+}
@@ -0,0 +1,551 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+/**
+ * A contraction hierarchy over a CSRGraph snapshot.
+ *
+ * Preprocessing ranks the vertices by importance and contracts them from least
+ * to most important. Contracting v removes it from the remaining graph and adds
+ * a shortcut u -> w for every pair of neighbors whose only shortest path ran
+ * through v. Every edge that v still has at that point goes to a more important
+ * vertex and is kept: out-edges in the upward graph of v and in-edges in the
+ * downward graph of v.
+ *
+ * A query runs Dijkstra upward from the start and upward along reversed
+ * downward edges from the target; the shortest path passes through its most
+ * important vertex, where the two searches meet. Shortcuts remember the
+ * vertex they skip, so the route is unpacked back into original edges.
+ *
+ * Buildings may only start or end a path, so they are contracted first
+ * without adding any shortcuts through them.
+ */
+public class ContractionHierarchy {
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int DEFAULT_ARC_CAPACITY = 4;
+
+    final CSRGraph graph;
+    final int[] rank;
+
+    final int[] upOffsets;
+    final int[] upTargets;
+    final double[] upWeights;
+    final int[] upMiddles;
+    final int[] downOffsets;
+    final int[] downSources;
+    final double[] downWeights;
+    final int[] downMiddles;
+
+    private final ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+
+    // Remaining graph during preprocessing, one growable arc list per vertex.
+    private int[][] outTo;
+    private double[][] outWeight;
+    private int[][] outMiddle;
+    private int[] outCount;
+    private int[][] inFrom;
+    private double[][] inWeight;
+    private int[][] inMiddle;
+    private int[] inCount;
+    private boolean[] contracted;
+    private int[] contractedNeighbors;
+    private SearchWorkspace witness;
+
+    /**
+     * Contracts every vertex of graph. This is the expensive step; queries
+     * afterwards only touch a small upward part of the hierarchy.
+     * @param graph the snapshot to build the hierarchy over
+     */
+    public ContractionHierarchy(CSRGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        this.rank = new int[n];
+        this.initializeRemainingGraph();
+
+        int[][] upTo = new int[n][];
+        double[][] upWeight = new double[n][];
+        int[][] upMiddle = new int[n][];
+        int[][] downFrom = new int[n][];
+        double[][] downWeight = new double[n][];
+        int[][] downMiddle = new int[n][];
+
+        int nextRank = 0;
+        for (int v = 0; v < n; v++) {
+            if (graph.building[v]) {
+                this.rank[v] = nextRank;
+                nextRank++;
+                this.recordArcs(v, upTo, upWeight, upMiddle, downFrom, downWeight, downMiddle);
+                this.contracted[v] = true;
+            }
+        }
+
+        SearchWorkspace order = new SearchWorkspace(n);
+        order.reset();
+        for (int v = 0; v < n; v++) {
+            if (!graph.building[v]) {
+                order.push(v, this.contract(v, true));
+            }
+        }
+
+        while (!order.isHeapEmpty()) {
+            int v = order.pop();
+            double priority = this.contract(v, true);
+            if (!order.isHeapEmpty() && priority > order.peekKey()) {
+                order.push(v, priority);
+                continue;
+            }
+
+            this.rank[v] = nextRank;
+            nextRank++;
+            this.recordArcs(v, upTo, upWeight, upMiddle, downFrom, downWeight, downMiddle);
+            this.contract(v, false);
+            this.contracted[v] = true;
+        }
+
+        this.upOffsets = new int[n + 1];
+        this.downOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            this.upOffsets[v + 1] = this.upOffsets[v] + upTo[v].length;
+            this.downOffsets[v + 1] = this.downOffsets[v] + downFrom[v].length;
+        }
+        this.upTargets = new int[this.upOffsets[n]];
+        this.upWeights = new double[this.upOffsets[n]];
+        this.upMiddles = new int[this.upOffsets[n]];
+        this.downSources = new int[this.downOffsets[n]];
+        this.downWeights = new double[this.downOffsets[n]];
+        this.downMiddles = new int[this.downOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < upTo[v].length; i++) {
+                this.upTargets[this.upOffsets[v] + i] = upTo[v][i];
+                this.upWeights[this.upOffsets[v] + i] = upWeight[v][i];
+                this.upMiddles[this.upOffsets[v] + i] = upMiddle[v][i];
+            }
+            for (int i = 0; i < downFrom[v].length; i++) {
+                this.downSources[this.downOffsets[v] + i] = downFrom[v][i];
+                this.downWeights[this.downOffsets[v] + i] = downWeight[v][i];
+                this.downMiddles[this.downOffsets[v] + i] = downMiddle[v][i];
+            }
+        }
+
+        this.outTo = null;
+        this.outWeight = null;
+        this.outMiddle = null;
+        this.outCount = null;
+        this.inFrom = null;
+        this.inWeight = null;
+        this.inMiddle = null;
+        this.inCount = null;
+        this.contracted = null;
+        this.contractedNeighbors = null;
+        this.witness = null;
+
+        this.forwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.size()));
+        this.backwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.size()));
+    }
+
+    private void initializeRemainingGraph() {
+        int n = this.graph.size();
+        this.outTo = new int[n][DEFAULT_ARC_CAPACITY];
+        this.outWeight = new double[n][DEFAULT_ARC_CAPACITY];
+        this.outMiddle = new int[n][DEFAULT_ARC_CAPACITY];
+        this.outCount = new int[n];
+        this.inFrom = new int[n][DEFAULT_ARC_CAPACITY];
+        this.inWeight = new double[n][DEFAULT_ARC_CAPACITY];
+        this.inMiddle = new int[n][DEFAULT_ARC_CAPACITY];
+        this.inCount = new int[n];
+        this.contracted = new boolean[n];
+        this.contractedNeighbors = new int[n];
+        this.witness = new SearchWorkspace(n);
+
+        for (int v = 0; v < n; v++) {
+            for (int e = this.graph.offsets[v]; e < this.graph.offsets[v + 1]; e++) {
+                if (this.graph.targets[e] != v) {
+                    this.addArc(v, this.graph.targets[e], this.graph.weights[e], -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the arc u -> w to the remaining graph, or shortens the existing
+     * arc u -> w if weight is smaller than its current weight.
+     */
+    private void addArc(int u, int w, double weight, int middle) {
+        for (int i = 0; i < this.outCount[u]; i++) {
+            if (this.outTo[u][i] == w) {
+                if (weight < this.outWeight[u][i]) {
+                    this.outWeight[u][i] = weight;
+                    this.outMiddle[u][i] = middle;
+                    for (int j = 0; j < this.inCount[w]; j++) {
+                        if (this.inFrom[w][j] == u) {
+                            this.inWeight[w][j] = weight;
+                            this.inMiddle[w][j] = middle;
+                        }
+                    }
+                }
+                return;
+            }
+        }
+
+        if (this.outCount[u] == this.outTo[u].length) {
+            this.outTo[u] = grow(this.outTo[u]);
+            this.outWeight[u] = grow(this.outWeight[u]);
+            this.outMiddle[u] = grow(this.outMiddle[u]);
+        }
+        this.outTo[u][this.outCount[u]] = w;
+        this.outWeight[u][this.outCount[u]] = weight;
+        this.outMiddle[u][this.outCount[u]] = middle;
+        this.outCount[u]++;
+
+        if (this.inCount[w] == this.inFrom[w].length) {
+            this.inFrom[w] = grow(this.inFrom[w]);
+            this.inWeight[w] = grow(this.inWeight[w]);
+            this.inMiddle[w] = grow(this.inMiddle[w]);
+        }
+        this.inFrom[w][this.inCount[w]] = u;
+        this.inWeight[w][this.inCount[w]] = weight;
+        this.inMiddle[w][this.inCount[w]] = middle;
+        this.inCount[w]++;
+    }
+
+    private static int[] grow(int[] arr) {
+        int[] newArr = new int[arr.length * 2];
+        for (int i = 0; i < arr.length; i++) {
+            newArr[i] = arr[i];
+        }
+        return newArr;
+    }
+
+    private static double[] grow(double[] arr) {
+        double[] newArr = new double[arr.length * 2];
+        for (int i = 0; i < arr.length; i++) {
+            newArr[i] = arr[i];
+        }
+        return newArr;
+    }
+
+    /**
+     * Copies the arcs between v and its uncontracted neighbors into the
+     * upward and downward graphs of v.
+     */
+    private void recordArcs(int v, int[][] upTo, double[][] upWeight, int[][] upMiddle,
+                            int[][] downFrom, double[][] downWeight, int[][] downMiddle) {
+        int ups = 0;
+        for (int i = 0; i < this.outCount[v]; i++) {
+            if (!this.contracted[this.outTo[v][i]]) {
+                ups++;
+            }
+        }
+        upTo[v] = new int[ups];
+        upWeight[v] = new double[ups];
+        upMiddle[v] = new int[ups];
+        ups = 0;
+        for (int i = 0; i < this.outCount[v]; i++) {
+            if (!this.contracted[this.outTo[v][i]]) {
+                upTo[v][ups] = this.outTo[v][i];
+                upWeight[v][ups] = this.outWeight[v][i];
+                upMiddle[v][ups] = this.outMiddle[v][i];
+                ups++;
+            }
+        }
+
+        int downs = 0;
+        for (int i = 0; i < this.inCount[v]; i++) {
+            if (!this.contracted[this.inFrom[v][i]]) {
+                downs++;
+            }
+        }
+        downFrom[v] = new int[downs];
+        downWeight[v] = new double[downs];
+        downMiddle[v] = new int[downs];
+        downs = 0;
+        for (int i = 0; i < this.inCount[v]; i++) {
+            if (!this.contracted[this.inFrom[v][i]]) {
+                downFrom[v][downs] = this.inFrom[v][i];
+                downWeight[v][downs] = this.inWeight[v][i];
+                downMiddle[v][downs] = this.inMiddle[v][i];
+                downs++;
+            }
+        }
+    }
+
+    /**
+     * Contracts v, or only simulates contracting it.
+     * @param v the vertex to contract
+     * @param simulate if true, the remaining graph is left unchanged
+     * @return the priority of v: the shortcuts contracting v needs, minus the
+     *         arcs it removes, plus the number of neighbors already contracted
+     */
+    private double contract(int v, boolean simulate) {
+        int shortcuts = 0;
+        int removed = 0;
+        for (int i = 0; i < this.inCount[v]; i++) {
+            int u = this.inFrom[v][i];
+            if (this.contracted[u]) {
+                continue;
+            }
+            removed++;
+
+            double maxDist = 0;
+            for (int j = 0; j < this.outCount[v]; j++) {
+                int w = this.outTo[v][j];
+                if (!this.contracted[w] && w != u) {
+                    maxDist = Math.max(maxDist, this.inWeight[v][i] + this.outWeight[v][j]);
+                }
+            }
+            this.witnessSearch(u, v, maxDist);
+
+            for (int j = 0; j < this.outCount[v]; j++) {
+                int w = this.outTo[v][j];
+                if (this.contracted[w] || w == u) {
+                    continue;
+                }
+                double viaV = this.inWeight[v][i] + this.outWeight[v][j];
+                if (this.witness.distance(w) > viaV) {
+                    shortcuts++;
+                    if (!simulate) {
+                        this.addArc(u, w, viaV, v);
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < this.outCount[v]; j++) {
+            int w = this.outTo[v][j];
+            if (!this.contracted[w]) {
+                removed++;
+                if (!simulate) {
+                    this.contractedNeighbors[w]++;
+                }
+            }
+        }
+        if (!simulate) {
+            for (int i = 0; i < this.inCount[v]; i++) {
+                int u = this.inFrom[v][i];
+                if (!this.contracted[u]) {
+                    this.contractedNeighbors[u]++;
+                }
+            }
+        }
+
+        return shortcuts - removed + this.contractedNeighbors[v];
+    }
+
+    /**
+     * Runs a bounded Dijkstra from u in the remaining graph without passing
+     * through v or any building. Distances are left in the witness workspace.
+     */
+    private void witnessSearch(int u, int v, double maxDist) {
+        SearchWorkspace ws = this.witness;
+        ws.reset();
+        ws.reach(u, 0.0, -1);
+        ws.push(u, 0.0);
+
+        while (!ws.isHeapEmpty() && ws.settled < WITNESS_SETTLE_LIMIT) {
+            double d = ws.peekKey();
+            int x = ws.pop();
+            if (d > maxDist) {
+                break;
+            }
+            ws.settled++;
+
+            for (int j = 0; j < this.outCount[x]; j++) {
+                int y = this.outTo[x][j];
+                if (y == v || this.contracted[y] || this.graph.building[y]) {
+                    continue;
+                }
+                double newDistance = d + this.outWeight[x][j];
+                if (newDistance < ws.distance(y)) {
+                    ws.reach(y, newDistance, x);
+                    ws.push(y, newDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the position of v in the contraction order; vertices with a
+     * higher rank are more important.
+     * @param v the vertex index
+     * @return the rank of v
+     */
+    public int rank(int v) {
+        return this.rank[v];
+    }
+
+    /**
+     * Returns the number of arcs in the upward and downward graphs,
+     * including shortcuts.
+     * @return the number of arcs in the hierarchy
+     */
+    public int arcCount() {
+        return this.upTargets.length + this.downSources.length;
+    }
+
+    /**
+     * Returns the number of vertices settled by this thread's last query.
+     * @return the number of vertices settled by the last query
+     */
+    public int settledCount() {
+        return this.forwardWorkspaces.get().settled + this.backwardWorkspaces.get().settled;
+    }
+
+    /**
+     * Returns a shortest path between the start and target locations
+     * (including the start and target locations).
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target, or null if there is none
+     */
+    public IDeque<Location> shortestPath(Location start, Location target) {
+        int s = this.graph.indexOf(start.id);
+        int t = this.graph.indexOf(target.id);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+
+        SearchWorkspace forward = this.forwardWorkspaces.get();
+        SearchWorkspace backward = this.backwardWorkspaces.get();
+        int meet = this.search(forward, backward, s, t);
+        if (meet < 0) {
+            return null;
+        }
+
+        LinkedDeque<Location> path = new LinkedDeque<>();
+        path.addFront(this.graph.location(meet));
+        for (int curr = meet; curr != s; curr = forward.parent[curr]) {
+            this.unpackFront(forward.parent[curr], curr, path);
+        }
+        for (int curr = meet; curr != t; curr = backward.parent[curr]) {
+            this.unpackBack(curr, backward.parent[curr], path);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the length of a shortest path between vertices s and t.
+     * @param s the source vertex
+     * @param t the target vertex
+     * @return the length of a shortest path, or infinity if there is none
+     */
+    public double distance(int s, int t) {
+        SearchWorkspace forward = this.forwardWorkspaces.get();
+        SearchWorkspace backward = this.backwardWorkspaces.get();
+        int meet = this.search(forward, backward, s, t);
+        return meet < 0 ? Double.POSITIVE_INFINITY : forward.dist[meet] + backward.dist[meet];
+    }
+
+    /**
+     * Searches upward from s and t until neither search can improve on the
+     * best meeting vertex found so far.
+     * @return the meeting vertex, or -1 if t is not reachable from s
+     */
+    private int search(SearchWorkspace forward, SearchWorkspace backward, int s, int t) {
+        CSRGraph g = this.graph;
+        forward.reset();
+        backward.reset();
+        forward.reach(s, 0.0, -1);
+        forward.push(s, 0.0);
+        backward.reach(t, 0.0, -1);
+        backward.push(t, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            double forwardMin = forward.isHeapEmpty() ? Double.POSITIVE_INFINITY : forward.peekKey();
+            double backwardMin = backward.isHeapEmpty() ? Double.POSITIVE_INFINITY : backward.peekKey();
+            if (forwardMin >= best && backwardMin >= best) {
+                break;
+            }
+
+            if (forwardMin <= backwardMin && forwardMin < best) {
+                int v = forward.pop();
+                forward.settled++;
+                if (backward.reached(v) && forwardMin + backward.dist[v] < best) {
+                    best = forwardMin + backward.dist[v];
+                    meet = v;
+                }
+                for (int e = this.upOffsets[v]; e < this.upOffsets[v + 1]; e++) {
+                    int u = this.upTargets[e];
+                    // buildings can end a path but are never walked through
+                    if (g.building[u] && u != t) {
+                        continue;
+                    }
+                    double newDistance = forwardMin + this.upWeights[e];
+                    if (newDistance < forward.distance(u)) {
+                        forward.reach(u, newDistance, v);
+                        forward.push(u, newDistance);
+                    }
+                }
+            } else {
+                int v = backward.pop();
+                backward.settled++;
+                if (forward.reached(v) && backwardMin + forward.dist[v] < best) {
+                    best = backwardMin + forward.dist[v];
+                    meet = v;
+                }
+                for (int e = this.downOffsets[v]; e < this.downOffsets[v + 1]; e++) {
+                    int u = this.downSources[e];
+                    // buildings can start a path but are never walked through
+                    if (g.building[u] && u != s) {
+                        continue;
+                    }
+                    double newDistance = backwardMin + this.downWeights[e];
+                    if (newDistance < backward.distance(u)) {
+                        backward.reach(u, newDistance, v);
+                        backward.push(u, newDistance);
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * Returns the vertex skipped by the hierarchy arc u -> w, or -1 if the
+     * arc is an original edge.
+     */
+    private int middleOf(int u, int w) {
+        if (this.rank[u] < this.rank[w]) {
+            for (int e = this.upOffsets[u]; e < this.upOffsets[u + 1]; e++) {
+                if (this.upTargets[e] == w) {
+                    return this.upMiddles[e];
+                }
+            }
+        } else {
+            for (int e = this.downOffsets[w]; e < this.downOffsets[w + 1]; e++) {
+                if (this.downSources[e] == u) {
+                    return this.downMiddles[e];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the original vertices of the arc u -> w, except w, to the front of path.
+     */
+    private void unpackFront(int u, int w, IDeque<Location> path) {
+        int middle = this.middleOf(u, w);
+        if (middle < 0) {
+            path.addFront(this.graph.location(u));
+            return;
+        }
+        this.unpackFront(middle, w, path);
+        this.unpackFront(u, middle, path);
+    }
+
+    /**
+     * Adds the original vertices of the arc u -> w, except u, to the back of path.
+     */
+    private void unpackBack(int u, int w, IDeque<Location> path) {
+        int middle = this.middleOf(u, w);
+        if (middle < 0) {
+            path.addBack(this.graph.location(w));
+            return;
+        }
+        this.unpackBack(u, middle, path);
+        this.unpackBack(middle, w, path);
+    }
+}
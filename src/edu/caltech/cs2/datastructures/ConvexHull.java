@@ -0,0 +1,86 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The convex hull of a set of locations, used to outline an isochrone.
+ *
+ * Computed with Andrew's monotone chain on (longitude, latitude). Over an
+ * area the size of a city that projection only stretches the map uniformly,
+ * which does not change which locations are corners of the hull.
+ */
+public class ConvexHull {
+    private ConvexHull() {
+    }
+
+    /**
+     * Returns the corners of the convex hull of locs in counterclockwise
+     * order, starting from the westmost corner.
+     * Of several locations at the same point, only the first in locs is kept.
+     * Collinear locations give the two ends of their line.
+     * @param locs the locations to enclose
+     * @return the corners of the hull, or every distinct point of locs if there are fewer than three
+     */
+    public static IDeque<Location> of(IDeque<Location> locs) {
+        Location[] points = new Location[locs.size()];
+        int n = 0;
+        for (Location loc : locs) {
+            points[n] = loc;
+            n++;
+        }
+        Arrays.sort(points, Comparator.comparingDouble((Location l) -> l.lon).thenComparingDouble(l -> l.lat));
+
+        // locations at the same point would otherwise show up as repeated corners
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || points[i].lon != points[distinct - 1].lon || points[i].lat != points[distinct - 1].lat) {
+                points[distinct] = points[i];
+                distinct++;
+            }
+        }
+        n = distinct;
+
+        IDeque<Location> hull = new LinkedDeque<>();
+        if (n < 3) {
+            for (int i = 0; i < n; i++) {
+                hull.addBack(points[i]);
+            }
+            return hull;
+        }
+
+        Location[] chain = new Location[2 * n];
+        int k = 0;
+        // lower hull, then upper hull
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && cross(chain[k - 2], chain[k - 1], points[i]) <= 0) {
+                k--;
+            }
+            chain[k] = points[i];
+            k++;
+        }
+        for (int i = n - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(chain[k - 2], chain[k - 1], points[i]) <= 0) {
+                k--;
+            }
+            chain[k] = points[i];
+            k++;
+        }
+
+        // the last corner repeats the first
+        for (int i = 0; i < k - 1; i++) {
+            hull.addBack(chain[i]);
+        }
+        return hull;
+    }
+
+    /**
+     * Returns a positive number if a, b, c turn counterclockwise, a negative
+     * number if they turn clockwise, and zero if they are collinear.
+     */
+    private static double cross(Location a, Location b, Location c) {
+        return (b.lon - a.lon) * (c.lat - a.lat) - (b.lat - a.lat) * (c.lon - a.lon);
+    }
+}
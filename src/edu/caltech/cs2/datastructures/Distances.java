@@ -0,0 +1,102 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * Distance kernels between points given in radians, in feet.
+ *
+ * haversine is the exact great-circle distance that Location.getDistance
+ * returns. rank skips the arcsine and square root of haversine: it grows with
+ * the distance, so it ranks points exactly the same way and can be compared
+ * against rankOf(d) to test whether a distance is below d. equirectangular
+ * treats a small patch of the sphere as flat; it needs one cosine and one
+ * square root, and within EQUIRECTANGULAR_MAX_FT it is off by less than
+ * EQUIRECTANGULAR_ERROR of the true distance at latitudes up to 70 degrees.
+ */
+public class Distances {
+    /** The longest distance, in feet, that equirectangular is accurate for. */
+    public static final double EQUIRECTANGULAR_MAX_FT = 52800;
+    /** The largest relative error of equirectangular within EQUIRECTANGULAR_MAX_FT. */
+    public static final double EQUIRECTANGULAR_ERROR = 1e-5;
+
+    private Distances() {
+    }
+
+    /**
+     * Returns the great-circle distance between two points.
+     * @param lat1 the latitude of the first point, in radians
+     * @param lon1 the longitude of the first point, in radians
+     * @param cosLat1 the cosine of lat1
+     * @param lat2 the latitude of the second point, in radians
+     * @param lon2 the longitude of the second point, in radians
+     * @param cosLat2 the cosine of lat2
+     * @return the distance between the points, in feet
+     */
+    public static double haversine(double lat1, double lon1, double cosLat1, double lat2, double lon2, double cosLat2) {
+        return 2 * Location.EARTH_RAD_FT * Math.asin(Math.sqrt(rank(lat1, lon1, cosLat1, lat2, lon2, cosLat2)));
+    }
+
+    /**
+     * Returns a number that orders pairs of points the same way as their
+     * great-circle distance: the haversine of the angle between them.
+     * @param lat1 the latitude of the first point, in radians
+     * @param lon1 the longitude of the first point, in radians
+     * @param cosLat1 the cosine of lat1
+     * @param lat2 the latitude of the second point, in radians
+     * @param lon2 the longitude of the second point, in radians
+     * @param cosLat2 the cosine of lat2
+     * @return the rank of the distance between the points
+     */
+    public static double rank(double lat1, double lon1, double cosLat1, double lat2, double lon2, double cosLat2) {
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin((lon2 - lon1) / 2);
+        return Math.min(1.0, sinLat * sinLat + sinLon * sinLon * cosLat1 * cosLat2);
+    }
+
+    /**
+     * Returns the rank of a great-circle distance, so that a pair of points
+     * is closer than distance exactly when its rank is below rankOf(distance).
+     * @param distance a distance in feet
+     * @return the rank of distance
+     */
+    public static double rankOf(double distance) {
+        if (distance >= Math.PI * Location.EARTH_RAD_FT) {
+            return 1.0;
+        }
+        double sin = Math.sin(Math.max(0, distance) / (2 * Location.EARTH_RAD_FT));
+        return sin * sin;
+    }
+
+    /**
+     * Returns the distance between two points on a plane through them,
+     * with longitude scaled by the cosine of their mean latitude.
+     * @param lat1 the latitude of the first point, in radians
+     * @param lon1 the longitude of the first point, in radians
+     * @param lat2 the latitude of the second point, in radians
+     * @param lon2 the longitude of the second point, in radians
+     * @return the approximate distance between the points, in feet
+     */
+    public static double equirectangular(double lat1, double lon1, double lat2, double lon2) {
+        double x = (lon2 - lon1) * Math.cos((lat1 + lat2) / 2);
+        double y = lat2 - lat1;
+        return Location.EARTH_RAD_FT * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Returns a lower bound on the great-circle distance between two points:
+     * the equirectangular distance shrunk by its error bound when it is short
+     * enough to be accurate, and the exact distance otherwise.
+     * @param lat1 the latitude of the first point, in radians
+     * @param lon1 the longitude of the first point, in radians
+     * @param cosLat1 the cosine of lat1
+     * @param lat2 the latitude of the second point, in radians
+     * @param lon2 the longitude of the second point, in radians
+     * @param cosLat2 the cosine of lat2
+     * @return a distance in feet no larger than the distance between the points
+     */
+    public static double lowerBound(double lat1, double lon1, double cosLat1, double lat2, double lon2, double cosLat2) {
+        double approx = equirectangular(lat1, lon1, lat2, lon2);
+        if (approx <= EQUIRECTANGULAR_MAX_FT && Math.abs(lat1) <= Math.toRadians(70) && Math.abs(lat2) <= Math.toRadians(70)) {
+            return approx * (1 - EQUIRECTANGULAR_ERROR);
+        }
+        return haversine(lat1, lon1, cosLat1, lat2, lon2, cosLat2);
+    }
+}
@@ -1,14 +1,27 @@
 package edu.caltech.cs2.datastructures;
 
+import edu.caltech.cs2.interfaces.IDictionary;
+import edu.caltech.cs2.interfaces.IDictionaryFactory;
 import edu.caltech.cs2.interfaces.IGraph;
 import edu.caltech.cs2.interfaces.ISet;
 
 public class Graph<V, E> extends IGraph<V, E> {
 
-    private ChainingHashDictionary<V, ChainingHashDictionary<V, E>> verts;
+    private IDictionaryFactory dictionaries;
+    private IDictionary<V, IDictionary<V, E>> verts;
 
     public Graph(){
-        this.verts = new ChainingHashDictionary(MoveToFrontDictionary::new);
+        this(ChainingHashDictionary::withMoveToFrontChains);
+    }
+
+    /**
+     * Creates an empty graph whose vertex table and adjacency lists are
+     * dictionaries made by dictionaries.
+     * @param dictionaries the factory for the graph's dictionaries
+     */
+    public Graph(IDictionaryFactory dictionaries) {
+        this.dictionaries = dictionaries;
+        this.verts = dictionaries.create();
     }
 
     @Override
@@ -16,7 +29,7 @@ public class Graph<V, E> extends IGraph<V, E> {
         if (verts.containsKey(vertex)) {
             return false;
         }
-        this.verts.put(vertex, new ChainingHashDictionary(MoveToFrontDictionary::new));
+        this.verts.put(vertex, this.dictionaries.create());
         return true;
     }
 
@@ -56,7 +69,7 @@ public class Graph<V, E> extends IGraph<V, E> {
             return false;
         }
 
-        ChainingHashDictionary temp = this.verts.get(src);
+        IDictionary<V, E> temp = this.verts.get(src);
         temp.remove(dest);
 
         this.verts.put(src, temp);
@@ -81,4 +94,16 @@ public class Graph<V, E> extends IGraph<V, E> {
     public ISet<V> neighbors(V vertex) {
         return verts.get(vertex).keySet();
     }
+
+    /**
+     * Freezes the vertex table and every adjacency list, for a graph that is
+     * only read from now on. Afterwards adding or removing vertices or edges
+     * may throw UnsupportedOperationException.
+     */
+    public void freezeDictionaries() {
+        for (V vertex : this.verts) {
+            this.verts.get(vertex).freeze();
+        }
+        this.verts.freeze();
+    }
 }
\ No newline at end of file
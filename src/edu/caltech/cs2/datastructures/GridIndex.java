@@ -0,0 +1,178 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * A uniform grid over the vertices of a CSRGraph, or a subset of them, for
+ * finding the vertices within a radius of a point on the map.
+ *
+ * The map's bounding box is cut into square cells of a fixed size in feet.
+ * Vertices are bucketed by cell with a counting sort, so the grid is two flat
+ * arrays: cellStart[c] is where the vertices of cell c begin in
+ * cellVertices. A radius query only visits the cells that cover the circle's
+ * bounding box. The coordinates of the vertices are copied into columns in
+ * the same order as cellVertices, so each row of cells a query visits is one
+ * contiguous run that BatchDistances filters in a single pass.
+ */
+public class GridIndex {
+    /** The default side length of a cell, in feet. */
+    public static final double DEFAULT_CELL_SIZE_FT = 500;
+
+    private static final double FT_PER_DEGREE = Location.EARTH_RAD_FT * Math.PI / 180;
+
+    private final double cellSize;
+    private final double minLat;
+    private final double minLon;
+    private final double latStep;
+    private final double lonStep;
+    private final int rows;
+    private final int cols;
+    private final int[] cellStart;
+    private final int[] cellVertices;
+    private final double[] cellLatRadians;
+    private final double[] cellLonRadians;
+    private final double[] cellCosLat;
+
+    /**
+     * Buckets every vertex of graph into cells of the given size.
+     * @param graph the snapshot to index
+     * @param cellSize the side length of a cell, in feet
+     */
+    public GridIndex(CSRGraph graph, double cellSize) {
+        this(graph, allVertices(graph), cellSize);
+    }
+
+    /**
+     * Buckets the given vertices of graph into cells of the given size.
+     * @param graph the snapshot the vertices belong to
+     * @param vertices the vertices to index
+     * @param cellSize the side length of a cell, in feet
+     */
+    public GridIndex(CSRGraph graph, int[] vertices, double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        int n = vertices.length;
+
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double maxAbsLat = 0;
+        for (int i = 0; i < n; i++) {
+            int v = vertices[i];
+            minLat = Math.min(minLat, graph.lat[v]);
+            minLon = Math.min(minLon, graph.lon[v]);
+            maxLat = Math.max(maxLat, graph.lat[v]);
+            maxLon = Math.max(maxLon, graph.lon[v]);
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(graph.lat[v]));
+        }
+        this.minLat = n == 0 ? 0 : minLat;
+        this.minLon = n == 0 ? 0 : minLon;
+
+        // cells are at least cellSize wide even at the latitude farthest from the equator
+        this.latStep = cellSize / FT_PER_DEGREE;
+        this.lonStep = this.latStep / Math.max(Math.cos(Math.toRadians(maxAbsLat)), 1e-6);
+        this.rows = n == 0 ? 1 : (int) ((maxLat - this.minLat) / this.latStep) + 1;
+        this.cols = n == 0 ? 1 : (int) ((maxLon - this.minLon) / this.lonStep) + 1;
+
+        this.cellStart = new int[this.rows * this.cols + 1];
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int v = vertices[i];
+            cellOf[i] = this.row(graph.lat[v]) * this.cols + this.col(graph.lon[v]);
+            this.cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < this.rows * this.cols; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        this.cellVertices = new int[n];
+        int[] next = new int[this.rows * this.cols];
+        for (int i = 0; i < n; i++) {
+            this.cellVertices[this.cellStart[cellOf[i]] + next[cellOf[i]]] = vertices[i];
+            next[cellOf[i]]++;
+        }
+
+        this.cellLatRadians = new double[n];
+        this.cellLonRadians = new double[n];
+        this.cellCosLat = new double[n];
+        for (int e = 0; e < n; e++) {
+            int v = this.cellVertices[e];
+            this.cellLatRadians[e] = graph.latRadians[v];
+            this.cellLonRadians[e] = graph.lonRadians[v];
+            this.cellCosLat[e] = graph.cosLat[v];
+        }
+    }
+
+    private static int[] allVertices(CSRGraph graph) {
+        int[] vertices = new int[graph.size()];
+        for (int v = 0; v < vertices.length; v++) {
+            vertices[v] = v;
+        }
+        return vertices;
+    }
+
+    private int row(double lat) {
+        return Math.max(0, Math.min(this.rows - 1, (int) Math.floor((lat - this.minLat) / this.latStep)));
+    }
+
+    private int col(double lon) {
+        return Math.max(0, Math.min(this.cols - 1, (int) Math.floor((lon - this.minLon) / this.lonStep)));
+    }
+
+    /**
+     * Returns the side length of a cell.
+     * @return the side length of a cell, in feet
+     */
+    public double cellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Returns every vertex whose distance from (lat, lon) is less than radius.
+     * @param lat the latitude of the center
+     * @param lon the longitude of the center
+     * @param radius the radius of the circle, in feet
+     * @return the vertices inside the circle, in no particular order
+     */
+    public int[] within(double lat, double lon, double radius) {
+        double latRadius = radius / FT_PER_DEGREE;
+        // a degree of longitude is shortest on the edge of the circle farthest from the equator
+        double farthestLat = Math.min(Math.abs(lat) + latRadius, 89.0);
+        double lonRadius = latRadius / Math.cos(Math.toRadians(farthestLat));
+
+        int rowLo = this.row(lat - latRadius);
+        int rowHi = this.row(lat + latRadius);
+        int colLo = this.col(lon - lonRadius);
+        int colHi = this.col(lon + lonRadius);
+
+        double latRadians = Math.toRadians(lat);
+        double lonRadians = Math.toRadians(lon);
+        double cosLat = Math.cos(latRadians);
+        double maxRank = Distances.rankOf(radius);
+        int candidates = 0;
+        for (int r = rowLo; r <= rowHi; r++) {
+            candidates += this.cellStart[r * this.cols + colHi + 1] - this.cellStart[r * this.cols + colLo];
+        }
+        double[] ranks = new double[candidates];
+        int[] found = new int[candidates];
+        int size = 0;
+        for (int r = rowLo; r <= rowHi; r++) {
+            int from = this.cellStart[r * this.cols + colLo];
+            int to = this.cellStart[r * this.cols + colHi + 1];
+            BatchDistances.ranks(latRadians, lonRadians, cosLat,
+                    this.cellLatRadians, this.cellLonRadians, this.cellCosLat, from, to, ranks);
+            for (int e = from; e < to; e++) {
+                if (ranks[e - from] < maxRank) {
+                    found[size] = this.cellVertices[e];
+                    size++;
+                }
+            }
+        }
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = found[i];
+        }
+        return result;
+    }
+}
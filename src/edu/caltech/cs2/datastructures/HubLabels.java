@@ -0,0 +1,304 @@
+package edu.caltech.cs2.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A hub labeling of a CSRGraph, derived from its contraction hierarchy.
+ *
+ * Every vertex v stores a forward label of (hub, distance from v to hub) pairs
+ * and a backward label of (hub, distance from hub to v) pairs, sorted by hub.
+ * The most important vertex on any shortest path from s to t is a hub in the
+ * forward label of s and in the backward label of t, so the distance from s
+ * to t is the smallest sum over their common hubs, found by one linear merge.
+ *
+ * Labels are built from the most important vertex down: the label of v is v
+ * itself plus the labels of its upward neighbors, with each entry dropped if
+ * the labels already know a shorter way to that hub. Hubs are numbered by
+ * rank and all labels share flat offset/hub/distance arrays.
+ *
+ * Buildings may only start or end a path, so they are never used as hubs;
+ * the only path with no other vertex on it is a single edge, which the
+ * query checks directly.
+ */
+public class HubLabels {
+    private final CSRGraph graph;
+
+    private final int[] forwardOffsets;
+    private final int[] forwardHubs;
+    private final double[] forwardDists;
+    private final int[] backwardOffsets;
+    private final int[] backwardHubs;
+    private final double[] backwardDists;
+
+    // Scratch space for collecting the label of one vertex, indexed by hub.
+    private double[] best;
+    private int[] stamp;
+    private int[] touched;
+    private int touchedCount;
+    private int round;
+
+    /**
+     * Builds the labels from the upward and downward graphs of hierarchy.
+     * @param hierarchy the contraction hierarchy to derive the labels from
+     */
+    public HubLabels(ContractionHierarchy hierarchy) {
+        this.graph = hierarchy.graph;
+        int n = this.graph.size();
+        int[] byRank = new int[n];
+        for (int v = 0; v < n; v++) {
+            byRank[hierarchy.rank[v]] = v;
+        }
+
+        this.best = new double[n];
+        this.stamp = new int[n];
+        this.touched = new int[n];
+        this.round = 0;
+
+        int[][] forwardHub = new int[n][];
+        double[][] forwardDist = new double[n][];
+        int[][] backwardHub = new int[n][];
+        double[][] backwardDist = new double[n][];
+        for (int r = n - 1; r >= 0; r--) {
+            int v = byRank[r];
+
+            this.collect(v, hierarchy, hierarchy.upOffsets, hierarchy.upTargets, hierarchy.upWeights, forwardHub, forwardDist);
+            this.prune(v, byRank, backwardHub, backwardDist);
+            forwardHub[v] = this.sortedHubs();
+            forwardDist[v] = this.distancesOf(forwardHub[v]);
+
+            this.collect(v, hierarchy, hierarchy.downOffsets, hierarchy.downSources, hierarchy.downWeights, backwardHub, backwardDist);
+            this.prune(v, byRank, forwardHub, forwardDist);
+            backwardHub[v] = this.sortedHubs();
+            backwardDist[v] = this.distancesOf(backwardHub[v]);
+        }
+
+        this.forwardOffsets = new int[n + 1];
+        this.backwardOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            this.forwardOffsets[v + 1] = this.forwardOffsets[v] + forwardHub[v].length;
+            this.backwardOffsets[v + 1] = this.backwardOffsets[v] + backwardHub[v].length;
+        }
+        this.forwardHubs = new int[this.forwardOffsets[n]];
+        this.forwardDists = new double[this.forwardOffsets[n]];
+        this.backwardHubs = new int[this.backwardOffsets[n]];
+        this.backwardDists = new double[this.backwardOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < forwardHub[v].length; i++) {
+                this.forwardHubs[this.forwardOffsets[v] + i] = forwardHub[v][i];
+                this.forwardDists[this.forwardOffsets[v] + i] = forwardDist[v][i];
+            }
+            for (int i = 0; i < backwardHub[v].length; i++) {
+                this.backwardHubs[this.backwardOffsets[v] + i] = backwardHub[v][i];
+                this.backwardDists[this.backwardOffsets[v] + i] = backwardDist[v][i];
+            }
+        }
+
+        this.best = null;
+        this.stamp = null;
+        this.touched = null;
+    }
+
+    /**
+     * Collects the candidate label of v into the scratch space: v itself,
+     * plus every hub of each neighbor u along the given arcs of v, at the
+     * arc weight plus the distance in the label of u.
+     */
+    private void collect(int v, ContractionHierarchy hierarchy, int[] offsets, int[] neighbors, double[] weights,
+                         int[][] labelHubs, double[][] labelDists) {
+        this.touchedCount = 0;
+        this.round++;
+        if (!this.graph.building[v]) {
+            this.offer(hierarchy.rank[v], 0.0);
+        }
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            int u = neighbors[e];
+            // buildings are never walked through
+            if (this.graph.building[u]) {
+                continue;
+            }
+            for (int i = 0; i < labelHubs[u].length; i++) {
+                this.offer(labelHubs[u][i], weights[e] + labelDists[u][i]);
+            }
+        }
+    }
+
+    private void offer(int hub, double dist) {
+        if (this.stamp[hub] != this.round) {
+            this.stamp[hub] = this.round;
+            this.best[hub] = dist;
+            this.touched[this.touchedCount] = hub;
+            this.touchedCount++;
+        } else if (dist < this.best[hub]) {
+            this.best[hub] = dist;
+        }
+    }
+
+    /**
+     * Drops each candidate hub h that the candidate label reaches more
+     * cheaply through another hub, using the finished opposite labels of the
+     * more important vertices.
+     */
+    private void prune(int v, int[] byRank, int[][] oppositeHubs, double[][] oppositeDists) {
+        int kept = 0;
+        for (int i = 0; i < this.touchedCount; i++) {
+            int hub = this.touched[i];
+            int h = byRank[hub];
+            boolean dominated = false;
+            if (h != v) {
+                for (int j = 0; j < oppositeHubs[h].length && !dominated; j++) {
+                    int other = oppositeHubs[h][j];
+                    if (other != hub && this.stamp[other] == this.round
+                            && this.best[other] + oppositeDists[h][j] < this.best[hub]) {
+                        dominated = true;
+                    }
+                }
+            }
+            if (!dominated) {
+                this.touched[kept] = hub;
+                kept++;
+            }
+        }
+        this.touchedCount = kept;
+    }
+
+    private int[] sortedHubs() {
+        int[] hubs = Arrays.copyOf(this.touched, this.touchedCount);
+        Arrays.sort(hubs);
+        return hubs;
+    }
+
+    private double[] distancesOf(int[] hubs) {
+        double[] dists = new double[hubs.length];
+        for (int i = 0; i < hubs.length; i++) {
+            dists[i] = this.best[hubs[i]];
+        }
+        return dists;
+    }
+
+    /**
+     * Returns the total number of entries in all labels.
+     * @return the number of label entries
+     */
+    public int entryCount() {
+        return this.forwardHubs.length + this.backwardHubs.length;
+    }
+
+    /**
+     * Returns the length of a shortest path between vertices s and t.
+     * @param s the source vertex
+     * @param t the target vertex
+     * @return the length of a shortest path, or infinity if there is none
+     */
+    public double distance(int s, int t) {
+        if (s == t) {
+            return 0.0;
+        }
+
+        double dist = this.edgeWeight(s, t);
+        int i = this.forwardOffsets[s];
+        int j = this.backwardOffsets[t];
+        int iEnd = this.forwardOffsets[s + 1];
+        int jEnd = this.backwardOffsets[t + 1];
+        while (i < iEnd && j < jEnd) {
+            int a = this.forwardHubs[i];
+            int b = this.backwardHubs[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                double viaHub = this.forwardDists[i] + this.backwardDists[j];
+                if (viaHub < dist) {
+                    dist = viaHub;
+                }
+                i++;
+                j++;
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Returns the weight of the shortest edge from s to t.
+     */
+    private double edgeWeight(int s, int t) {
+        double weight = Double.POSITIVE_INFINITY;
+        for (int e = this.graph.offsets[s]; e < this.graph.offsets[s + 1]; e++) {
+            if (this.graph.targets[e] == t && this.graph.weights[e] < weight) {
+                weight = this.graph.weights[e];
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the lengths of shortest paths from every source to every
+     * target. The backward labels of the targets are first sorted into one
+     * bucket per hub; each source then scans only the buckets of the hubs in
+     * its forward label, so every source is handled in a single pass.
+     * @param sources the source vertices, or -1 for a missing vertex
+     * @param targets the target vertices, or -1 for a missing vertex
+     * @return the matrix whose entry [i][j] is the distance from sources[i]
+     *         to targets[j], or infinity if there is no path
+     */
+    public double[][] distanceMatrix(int[] sources, int[] targets) {
+        int entries = 0;
+        for (int t : targets) {
+            if (t >= 0) {
+                entries += this.backwardOffsets[t + 1] - this.backwardOffsets[t];
+            }
+        }
+
+        // buckets are linked lists threaded through the entry arrays
+        int[] bucketHead = new int[this.graph.size()];
+        int[] next = new int[entries];
+        int[] column = new int[entries];
+        double[] bucketDist = new double[entries];
+        Arrays.fill(bucketHead, -1);
+        int entry = 0;
+        for (int j = 0; j < targets.length; j++) {
+            int t = targets[j];
+            if (t < 0) {
+                continue;
+            }
+            for (int k = this.backwardOffsets[t]; k < this.backwardOffsets[t + 1]; k++) {
+                int hub = this.backwardHubs[k];
+                column[entry] = j;
+                bucketDist[entry] = this.backwardDists[k];
+                next[entry] = bucketHead[hub];
+                bucketHead[hub] = entry;
+                entry++;
+            }
+        }
+
+        double[][] matrix = new double[sources.length][targets.length];
+        for (int i = 0; i < sources.length; i++) {
+            int s = sources[i];
+            double[] row = matrix[i];
+            for (int j = 0; j < targets.length; j++) {
+                if (s < 0 || targets[j] < 0) {
+                    row[j] = Double.POSITIVE_INFINITY;
+                } else if (s == targets[j]) {
+                    row[j] = 0.0;
+                } else {
+                    row[j] = this.edgeWeight(s, targets[j]);
+                }
+            }
+            if (s < 0) {
+                continue;
+            }
+
+            for (int k = this.forwardOffsets[s]; k < this.forwardOffsets[s + 1]; k++) {
+                int hub = this.forwardHubs[k];
+                double toHub = this.forwardDists[k];
+                for (int b = bucketHead[hub]; b >= 0; b = next[b]) {
+                    double viaHub = toHub + bucketDist[b];
+                    if (viaHub < row[column[b]]) {
+                        row[column[b]] = viaHub;
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+}
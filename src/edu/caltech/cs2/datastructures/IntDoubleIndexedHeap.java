@@ -0,0 +1,224 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * A min d-ary heap of dense int keys 0..capacity-1 with double priorities.
+ *
+ * The heap is two parallel arrays, keys and priorities by heap position, and
+ * position[k] is where key k sits in the heap, or -1 if it is not in the heap.
+ * Each key is in the heap at most once, so a search lowers a key's priority
+ * in place with decreaseKey instead of adding a duplicate entry. Nothing is
+ * allocated after construction. With a larger arity the heap is shallower, so
+ * decreaseKey moves fewer levels, while each pop compares more children.
+ */
+public class IntDoubleIndexedHeap {
+    private final int arity;
+    private final int[] heap;
+    private final double[] priorities;
+    private final int[] position;
+    private int size;
+
+    /**
+     * Creates an empty heap for the keys 0..capacity-1.
+     * @param capacity one more than the largest key
+     * @param arity the number of children of each node: 2, 4 or 8
+     */
+    public IntDoubleIndexedHeap(int capacity, int arity) {
+        if (arity != 2 && arity != 4 && arity != 8) {
+            throw new IllegalArgumentException("Arity must be 2, 4 or 8");
+        }
+        this.arity = arity;
+        this.heap = new int[capacity];
+        this.priorities = new double[capacity];
+        this.position = new int[capacity];
+        for (int k = 0; k < capacity; k++) {
+            this.position[k] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of keys in the heap.
+     * @return the number of keys in the heap
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     * @return true if the heap has no keys and false otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns whether key is in the heap.
+     * @param key the key to check
+     * @return true if key is in the heap and false otherwise
+     */
+    public boolean contains(int key) {
+        return this.position[key] >= 0;
+    }
+
+    /**
+     * Returns the priority of a key in the heap.
+     * @param key a key in the heap
+     * @return the priority of key
+     */
+    public double priority(int key) {
+        if (this.position[key] < 0) {
+            throw new IllegalArgumentException("Key is not in the heap");
+        }
+        return this.priorities[this.position[key]];
+    }
+
+    /**
+     * Removes every key from the heap, in time proportional to its size.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.position[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Adds a key that is not in the heap.
+     * @param key the key to add
+     * @param priority the priority of key
+     */
+    public void insert(int key, double priority) {
+        if (this.position[key] >= 0) {
+            throw new IllegalArgumentException("Key is already in the heap");
+        }
+        this.size++;
+        this.siftUp(this.size - 1, key, priority);
+    }
+
+    /**
+     * Lowers the priority of a key in the heap.
+     * @param key a key in the heap
+     * @param priority the new priority of key, no larger than its current one
+     */
+    public void decreaseKey(int key, double priority) {
+        int i = this.position[key];
+        if (i < 0) {
+            throw new IllegalArgumentException("Key is not in the heap");
+        }
+        if (priority > this.priorities[i]) {
+            throw new IllegalArgumentException("Priority would increase");
+        }
+        this.siftUp(i, key, priority);
+    }
+
+    /**
+     * Adds key with the given priority, or lowers its priority to the given
+     * one if it is already in the heap with a larger priority.
+     * @param key the key to add or lower
+     * @param priority the priority of key
+     * @return true if the heap changed and false otherwise
+     */
+    public boolean insertOrDecrease(int key, double priority) {
+        int i = this.position[key];
+        if (i < 0) {
+            this.size++;
+            this.siftUp(this.size - 1, key, priority);
+            return true;
+        }
+        if (priority < this.priorities[i]) {
+            this.siftUp(i, key, priority);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key with the smallest priority.
+     * @return the key at the top of the heap
+     */
+    public int peek() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.heap[0];
+    }
+
+    /**
+     * Returns the smallest priority in the heap.
+     * @return the priority of the key at the top of the heap
+     */
+    public double peekPriority() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.priorities[0];
+    }
+
+    /**
+     * Removes and returns the key with the smallest priority.
+     * @return the key that was at the top of the heap
+     */
+    public int pop() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        int min = this.heap[0];
+        this.position[min] = -1;
+        this.size--;
+        if (this.size > 0) {
+            this.siftDown(0, this.heap[this.size], this.priorities[this.size]);
+        }
+        return min;
+    }
+
+    /**
+     * Moves key up from position i until its parent is no larger, shifting
+     * the parents it passes down a level.
+     */
+    private void siftUp(int i, int key, double priority) {
+        while (i > 0) {
+            int parent = (i - 1) / this.arity;
+            if (this.priorities[parent] <= priority) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            this.priorities[i] = this.priorities[parent];
+            this.position[this.heap[i]] = i;
+            i = parent;
+        }
+        this.heap[i] = key;
+        this.priorities[i] = priority;
+        this.position[key] = i;
+    }
+
+    /**
+     * Moves key down from position i until no child is smaller, shifting the
+     * smallest child up a level each step.
+     */
+    private void siftDown(int i, int key, double priority) {
+        while (true) {
+            int first = this.arity * i + 1;
+            if (first >= this.size) {
+                break;
+            }
+            int last = Math.min(first + this.arity, this.size);
+            int child = first;
+            for (int c = first + 1; c < last; c++) {
+                if (this.priorities[c] < this.priorities[child]) {
+                    child = c;
+                }
+            }
+            if (priority <= this.priorities[child]) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            this.priorities[i] = this.priorities[child];
+            this.position[this.heap[i]] = i;
+            i = child;
+        }
+        this.heap[i] = key;
+        this.priorities[i] = priority;
+        this.position[key] = i;
+    }
+}
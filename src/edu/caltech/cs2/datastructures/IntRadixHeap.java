@@ -0,0 +1,210 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * A radix heap of dense int keys 0..capacity-1 with non-negative double
+ * priorities, for searches that pop priorities in increasing order.
+ *
+ * Each priority is quantized to a long number of units (RESOLUTION units per
+ * foot). The heap remembers last, the quantized priority of the most recent
+ * minimum, and keeps a key with quantized priority q in bucket 0 if q is at
+ * most last and otherwise in the bucket numbered by the highest bit where q
+ * and last differ. When bucket 0 runs dry, the lowest nonempty bucket is
+ * emptied into lower buckets around its own minimum; every key moves down at
+ * most 64 times, so each operation costs O(1) amortized plus the scan of
+ * bucket 0. Keys in bucket 0 are compared by their exact priorities, so keys
+ * come out in exactly the same order as from a comparison heap.
+ *
+ * Buckets are doubly linked lists threaded through int arrays indexed by key,
+ * so decreaseKey moves a key between buckets in O(1) and nothing is allocated
+ * after construction.
+ */
+public class IntRadixHeap {
+    /** The number of quantization units per foot: priorities are kept in centi-feet. */
+    public static final double RESOLUTION = 100;
+
+    private static final int BUCKETS = 65;
+
+    private final long[] units;
+    private final double[] priorities;
+    private final int[] bucketOf;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] head;
+    private long last;
+    private int size;
+
+    /**
+     * Creates an empty heap for the keys 0..capacity-1.
+     * @param capacity one more than the largest key
+     */
+    public IntRadixHeap(int capacity) {
+        this.units = new long[capacity];
+        this.priorities = new double[capacity];
+        this.bucketOf = new int[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        for (int k = 0; k < capacity; k++) {
+            this.bucketOf[k] = -1;
+        }
+        this.head = new int[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            this.head[b] = -1;
+        }
+        this.last = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of keys in the heap.
+     * @return the number of keys in the heap
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     * @return true if the heap has no keys and false otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns whether key is in the heap.
+     * @param key the key to check
+     * @return true if key is in the heap and false otherwise
+     */
+    public boolean contains(int key) {
+        return this.bucketOf[key] >= 0;
+    }
+
+    /**
+     * Removes every key from the heap, in time proportional to its size.
+     */
+    public void clear() {
+        for (int b = 0; b < BUCKETS; b++) {
+            for (int k = this.head[b]; k >= 0; k = this.next[k]) {
+                this.bucketOf[k] = -1;
+            }
+            this.head[b] = -1;
+        }
+        this.last = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Adds key with the given priority, or lowers its priority to the given
+     * one if it is already in the heap with a larger priority.
+     * @param key the key to add or lower
+     * @param priority the priority of key, which must be non-negative
+     * @return true if the heap changed and false otherwise
+     */
+    public boolean insertOrDecrease(int key, double priority) {
+        if (this.bucketOf[key] >= 0) {
+            if (priority >= this.priorities[key]) {
+                return false;
+            }
+            this.unlink(key);
+        } else {
+            this.size++;
+        }
+        this.priorities[key] = priority;
+        this.units[key] = (long) (priority * RESOLUTION);
+        this.link(key, this.bucket(this.units[key]));
+        return true;
+    }
+
+    /**
+     * Returns the key with the smallest priority.
+     * @return the key at the top of the heap
+     */
+    public int peek() {
+        return this.minOfFirstBucket();
+    }
+
+    /**
+     * Returns the smallest priority in the heap.
+     * @return the priority of the key at the top of the heap
+     */
+    public double peekPriority() {
+        return this.priorities[this.minOfFirstBucket()];
+    }
+
+    /**
+     * Removes and returns the key with the smallest priority.
+     * @return the key that was at the top of the heap
+     */
+    public int pop() {
+        int min = this.minOfFirstBucket();
+        this.unlink(min);
+        this.bucketOf[min] = -1;
+        this.size--;
+        return min;
+    }
+
+    private int bucket(long units) {
+        if (units <= this.last) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(units ^ this.last);
+    }
+
+    /**
+     * Refills bucket 0 if it is empty and returns the key in it with the
+     * smallest exact priority.
+     */
+    private int minOfFirstBucket() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (this.head[0] < 0) {
+            int b = 1;
+            while (this.head[b] < 0) {
+                b++;
+            }
+            long min = Long.MAX_VALUE;
+            for (int k = this.head[b]; k >= 0; k = this.next[k]) {
+                min = Math.min(min, this.units[k]);
+            }
+            this.last = min;
+            int k = this.head[b];
+            this.head[b] = -1;
+            while (k >= 0) {
+                int following = this.next[k];
+                this.link(k, this.bucket(this.units[k]));
+                k = following;
+            }
+        }
+
+        int best = this.head[0];
+        for (int k = this.next[best]; k >= 0; k = this.next[k]) {
+            if (this.priorities[k] < this.priorities[best]) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    private void link(int key, int b) {
+        this.bucketOf[key] = b;
+        this.prev[key] = -1;
+        this.next[key] = this.head[b];
+        if (this.head[b] >= 0) {
+            this.prev[this.head[b]] = key;
+        }
+        this.head[b] = key;
+    }
+
+    private void unlink(int key) {
+        int b = this.bucketOf[key];
+        if (this.prev[key] >= 0) {
+            this.next[this.prev[key]] = this.next[key];
+        } else {
+            this.head[b] = this.next[key];
+        }
+        if (this.next[key] >= 0) {
+            this.prev[this.next[key]] = this.prev[key];
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDictionary;
+
+/**
+ * A static 2-d tree over a set of vertices of a CSRGraph, for finding the
+ * vertices closest to a point on the map and the vertices inside a box.
+ *
+ * The tree is implicit: vertices are stored in one array, and the range
+ * [lo, hi) is a subtree whose root is its middle element. Subtrees at even
+ * depth are split by latitude and subtrees at odd depth by longitude.
+ * Coordinates are copied next to the vertex list so a search only touches
+ * these arrays, and a single nearest search allocates nothing.
+ *
+ * Candidates are ranked by Distances.rank, which orders them exactly as their
+ * great-circle distance would without the arcsine and square root. A subtree
+ * on the other side of a split is skipped only when the distance from the
+ * query to the split line already exceeds the best distance found, so the
+ * answer is the same as a linear scan would give.
+ */
+public class KdTree {
+    private final CSRGraph graph;
+    private final int[] vertices;
+    private final double[] lat;
+    private final double[] lon;
+
+    /**
+     * Builds a tree over the given vertices of graph.
+     * @param graph the snapshot the vertices belong to
+     * @param vertices the vertices to index
+     */
+    public KdTree(CSRGraph graph, int[] vertices) {
+        this.graph = graph;
+        this.vertices = new int[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            this.vertices[i] = vertices[i];
+        }
+        this.lat = new double[vertices.length];
+        this.lon = new double[vertices.length];
+
+        this.build(0, vertices.length, true);
+        for (int i = 0; i < vertices.length; i++) {
+            this.lat[i] = graph.lat[this.vertices[i]];
+            this.lon[i] = graph.lon[this.vertices[i]];
+        }
+    }
+
+    private void build(int lo, int hi, boolean byLat) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        this.select(lo, hi - 1, mid, byLat);
+        this.build(lo, mid, !byLat);
+        this.build(mid + 1, hi, !byLat);
+    }
+
+    /**
+     * Rearranges vertices[lo..hi] so that the k-th position holds the vertex
+     * it would hold if the range were sorted by coordinate, with smaller
+     * vertices before it and larger ones after.
+     */
+    private void select(int lo, int hi, int k, boolean byLat) {
+        while (lo < hi) {
+            double pivot = this.coordinate(this.vertices[(lo + hi) >>> 1], byLat);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (this.coordinate(this.vertices[i], byLat) < pivot) {
+                    i++;
+                }
+                while (this.coordinate(this.vertices[j], byLat) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = this.vertices[i];
+                    this.vertices[i] = this.vertices[j];
+                    this.vertices[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds one tree for each amenity and shop tag of the buildings in
+     * graph, over the buildings with that tag. Tags are lowercased.
+     * @param graph the snapshot to index
+     * @return the tree for each tag
+     */
+    public static IDictionary<String, KdTree> byCategory(CSRGraph graph) {
+        IDictionary<String, Integer> counts = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        for (int v : graph.buildings) {
+            for (String tag : categories(graph.location(v))) {
+                if (tag != null) {
+                    Integer count = counts.get(tag);
+                    counts.put(tag, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        IDictionary<String, int[]> members = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        IDictionary<String, Integer> filled = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        for (String tag : counts.keys()) {
+            members.put(tag, new int[counts.get(tag)]);
+            filled.put(tag, 0);
+        }
+        for (int v : graph.buildings) {
+            for (String tag : categories(graph.location(v))) {
+                if (tag != null) {
+                    int i = filled.get(tag);
+                    members.get(tag)[i] = v;
+                    filled.put(tag, i + 1);
+                }
+            }
+        }
+
+        IDictionary<String, KdTree> trees = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        for (String tag : members.keys()) {
+            trees.put(tag, new KdTree(graph, members.get(tag)));
+        }
+        return trees;
+    }
+
+    /**
+     * Returns the lowercased amenity and shop tags of loc, with null for a
+     * missing tag and for a shop tag equal to the amenity tag.
+     */
+    private static String[] categories(Location loc) {
+        String amenity = loc.amenity == null ? null : loc.amenity.toLowerCase();
+        String shop = loc.shop == null ? null : loc.shop.toLowerCase();
+        if (shop != null && shop.equals(amenity)) {
+            shop = null;
+        }
+        return new String[]{amenity, shop};
+    }
+
+    private double coordinate(int v, boolean byLat) {
+        return byLat ? this.graph.lat[v] : this.graph.lon[v];
+    }
+
+    /**
+     * Returns the number of vertices in the tree.
+     * @return the number of vertices in the tree
+     */
+    public int size() {
+        return this.vertices.length;
+    }
+
+    /**
+     * Returns the indexed vertex closest to (lat, lon). Ties go to the
+     * vertex with the smallest index.
+     * @param lat the latitude of the query point
+     * @param lon the longitude of the query point
+     * @return the closest vertex, or -1 if the tree is empty
+     */
+    public int nearest(double lat, double lon) {
+        int best = this.nearest(0, this.vertices.length, true, lat, lon, Math.cos(Math.toRadians(lat)), -1, Double.POSITIVE_INFINITY);
+        return best < 0 ? -1 : this.vertices[best];
+    }
+
+    /**
+     * Searches the subtree [lo, hi) for a position closer to the query than
+     * best, whose distance has rank bestRank.
+     * @return the closest position found, or best if none is closer
+     */
+    private int nearest(int lo, int hi, boolean byLat, double lat, double lon, double cosLat, int best, double bestRank) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        double rank = this.rank(this.vertices[mid], lat, lon, cosLat);
+        if (rank < bestRank || (rank == bestRank && best >= 0 && this.vertices[mid] < this.vertices[best])) {
+            best = mid;
+            bestRank = rank;
+        }
+
+        double diff = byLat ? lat - this.lat[mid] : lon - this.lon[mid];
+        int nearLo = diff < 0 ? lo : mid + 1;
+        int nearHi = diff < 0 ? mid : hi;
+        int found = this.nearest(nearLo, nearHi, !byLat, lat, lon, cosLat, best, bestRank);
+        if (found != best) {
+            best = found;
+            bestRank = this.rank(this.vertices[best], lat, lon, cosLat);
+        }
+
+        if (this.splitRank(diff, byLat, cosLat) <= bestRank) {
+            int farLo = diff < 0 ? mid + 1 : lo;
+            int farHi = diff < 0 ? hi : mid;
+            best = this.nearest(farLo, farHi, !byLat, lat, lon, cosLat, best, bestRank);
+        }
+        return best;
+    }
+
+    /**
+     * Returns the rank of the distance from vertex v to the query.
+     */
+    private double rank(int v, double lat, double lon, double cosLat) {
+        return Distances.rank(this.graph.latRadians[v], this.graph.lonRadians[v], this.graph.cosLat[v],
+                Math.toRadians(lat), Math.toRadians(lon), cosLat);
+    }
+
+    /**
+     * Returns the rank of a lower bound on the distance from the query to any
+     * point on the other side of a split line diff degrees away. Across a
+     * parallel it is the arc along the meridian; across a meridian it is the
+     * distance to the great circle of that meridian.
+     */
+    private double splitRank(double diff, boolean byLat, double cosLat) {
+        double radians = Math.toRadians(Math.abs(diff));
+        double bound;
+        if (byLat) {
+            bound = Location.EARTH_RAD_FT * radians;
+        } else if (radians >= Math.PI / 2) {
+            bound = 0;
+        } else {
+            bound = Location.EARTH_RAD_FT * Math.asin(Math.sin(radians) * cosLat);
+        }
+        // stay below rounding differences from the haversine formula
+        return Distances.rankOf(bound * (1 - 1e-9));
+    }
+
+    /**
+     * Returns the k indexed vertices closest to (lat, lon), closest first.
+     * Ties go to the vertex with the smallest index.
+     * @param lat the latitude of the query point
+     * @param lon the longitude of the query point
+     * @param k the number of vertices to return
+     * @return the k closest vertices, or all of them if there are fewer than k
+     */
+    public int[] nearest(double lat, double lon, int k) {
+        Neighbors found = new Neighbors(Math.max(0, Math.min(k, this.vertices.length)));
+        if (found.capacity > 0) {
+            this.nearest(0, this.vertices.length, true, lat, lon, Math.cos(Math.toRadians(lat)), found);
+        }
+        return found.sorted();
+    }
+
+    private void nearest(int lo, int hi, boolean byLat, double lat, double lon, double cosLat, Neighbors found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        found.offer(this.vertices[mid], this.rank(this.vertices[mid], lat, lon, cosLat));
+
+        double diff = byLat ? lat - this.lat[mid] : lon - this.lon[mid];
+        if (diff < 0) {
+            this.nearest(lo, mid, !byLat, lat, lon, cosLat, found);
+        } else {
+            this.nearest(mid + 1, hi, !byLat, lat, lon, cosLat, found);
+        }
+        if (this.splitRank(diff, byLat, cosLat) <= found.bound()) {
+            if (diff < 0) {
+                this.nearest(mid + 1, hi, !byLat, lat, lon, cosLat, found);
+            } else {
+                this.nearest(lo, mid, !byLat, lat, lon, cosLat, found);
+            }
+        }
+    }
+
+    /**
+     * Returns every indexed vertex inside the box, in no particular order.
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @return the vertices inside the box, edges included
+     */
+    public int[] inBox(double minLat, double minLon, double maxLat, double maxLon) {
+        return this.inBox(minLat, minLon, maxLat, maxLon, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit indexed vertices inside the box, in no particular
+     * order. The search stops as soon as limit vertices are found, so its
+     * cost depends on limit and not on how many vertices the box holds.
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @param limit the most vertices to return
+     * @return up to limit vertices inside the box, edges included
+     */
+    public int[] inBox(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        Neighbors found = new Neighbors(0);
+        this.inBox(0, this.vertices.length, true, minLat, minLon, maxLat, maxLon, limit, found);
+        int[] result = new int[found.size];
+        for (int i = 0; i < found.size; i++) {
+            result[i] = found.vertices[i];
+        }
+        return result;
+    }
+
+    private void inBox(int lo, int hi, boolean byLat, double minLat, double minLon, double maxLat, double maxLon,
+                       int limit, Neighbors found) {
+        if (lo >= hi || found.size >= limit) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double midLat = this.lat[mid];
+        double midLon = this.lon[mid];
+        if (midLat >= minLat && midLat <= maxLat && midLon >= minLon && midLon <= maxLon) {
+            found.add(this.vertices[mid]);
+        }
+
+        double split = byLat ? midLat : midLon;
+        if ((byLat ? minLat : minLon) <= split) {
+            this.inBox(lo, mid, !byLat, minLat, minLon, maxLat, maxLon, limit, found);
+        }
+        if ((byLat ? maxLat : maxLon) >= split) {
+            this.inBox(mid + 1, hi, !byLat, minLat, minLon, maxLat, maxLon, limit, found);
+        }
+    }
+
+    /**
+     * The result of a search: either the capacity closest vertices seen so
+     * far, kept in a max-heap on (distance, vertex), or with a capacity of 0
+     * an unbounded list of vertices.
+     */
+    private static class Neighbors {
+        private final int capacity;
+        private int[] vertices;
+        private double[] dists;
+        private int size;
+
+        Neighbors(int capacity) {
+            this.capacity = capacity;
+            this.vertices = new int[Math.max(capacity, 16)];
+            this.dists = new double[Math.max(capacity, 16)];
+            this.size = 0;
+        }
+
+        void add(int v) {
+            if (this.size == this.vertices.length) {
+                int[] newVertices = new int[this.vertices.length * 2];
+                for (int i = 0; i < this.size; i++) {
+                    newVertices[i] = this.vertices[i];
+                }
+                this.vertices = newVertices;
+            }
+            this.vertices[this.size] = v;
+            this.size++;
+        }
+
+        /**
+         * Returns the distance a vertex has to beat (or tie) to be kept.
+         */
+        double bound() {
+            return this.size < this.capacity ? Double.POSITIVE_INFINITY : this.dists[0];
+        }
+
+        private boolean before(double d1, int v1, double d2, int v2) {
+            return d1 < d2 || (d1 == d2 && v1 < v2);
+        }
+
+        void offer(int v, double d) {
+            if (this.size < this.capacity) {
+                int i = this.size;
+                this.size++;
+                while (i > 0 && this.before(this.dists[(i - 1) / 2], this.vertices[(i - 1) / 2], d, v)) {
+                    this.dists[i] = this.dists[(i - 1) / 2];
+                    this.vertices[i] = this.vertices[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                this.dists[i] = d;
+                this.vertices[i] = v;
+            } else if (this.before(d, v, this.dists[0], this.vertices[0])) {
+                this.siftDown(v, d, this.size);
+            }
+        }
+
+        /**
+         * Replaces the root of the first n heap entries with (v, d).
+         */
+        private void siftDown(int v, double d, int n) {
+            int i = 0;
+            while (2 * i + 1 < n) {
+                int child = 2 * i + 1;
+                if (child + 1 < n && this.before(this.dists[child], this.vertices[child],
+                        this.dists[child + 1], this.vertices[child + 1])) {
+                    child++;
+                }
+                if (!this.before(d, v, this.dists[child], this.vertices[child])) {
+                    break;
+                }
+                this.dists[i] = this.dists[child];
+                this.vertices[i] = this.vertices[child];
+                i = child;
+            }
+            this.dists[i] = d;
+            this.vertices[i] = v;
+        }
+
+        /**
+         * Empties the heap into an array, closest first.
+         */
+        int[] sorted() {
+            int[] result = new int[this.size];
+            for (int n = this.size; n > 0; n--) {
+                result[n - 1] = this.vertices[0];
+                this.siftDown(this.vertices[n - 1], this.dists[n - 1], n - 1);
+            }
+            this.size = 0;
+            return result;
+        }
+    }
+}
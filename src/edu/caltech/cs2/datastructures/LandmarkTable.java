@@ -0,0 +1,337 @@
+package edu.caltech.cs2.datastructures;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Shortest path distances between every vertex of a CSRGraph and a small set
+ * of landmarks, used as an A* heuristic (ALT).
+ *
+ * By the triangle inequality, d(v, t) >= d(L, t) - d(L, v) and
+ * d(v, t) >= d(v, L) - d(t, L) for every landmark L. Landmarks on the edge of
+ * the map give tight bounds for most routes. Distances ignore the rule that
+ * buildings cannot be walked through; that only makes them shorter, so the
+ * bounds stay valid.
+ *
+ * Distances are stored vertex-major in two flat arrays: the distance from
+ * landmark i to v is at fromLandmark[v * count + i].
+ */
+public class LandmarkTable {
+    private static final int FILE_MAGIC = 0x4C4D4B32;
+
+    /**
+     * How landmarks are picked.
+     */
+    public enum Selection {
+        /** Each landmark is the vertex farthest from the ones picked so far. */
+        FARTHEST,
+        /** Each landmark covers the region where the current bounds are worst. */
+        AVOID,
+        /** Landmarks are picked uniformly at random, without repeats. */
+        RANDOM
+    }
+
+    private final CSRGraph graph;
+    private final int count;
+    private final int[] landmarks;
+    private final double[] fromLandmark;
+    private final double[] toLandmark;
+
+    /**
+     * Picks count landmarks from graph and computes their distance tables.
+     * @param graph the snapshot to pick landmarks from
+     * @param count the number of landmarks
+     * @param selection how to pick the landmarks
+     * @param seed the seed for random choices
+     */
+    public LandmarkTable(CSRGraph graph, int count, Selection selection, long seed) {
+        this.graph = graph;
+        this.count = Math.min(count, graph.size());
+        this.landmarks = new int[this.count];
+        this.fromLandmark = new double[graph.size() * this.count];
+        this.toLandmark = new double[graph.size() * this.count];
+
+        Random random = new Random(seed);
+        SearchWorkspace ws = new SearchWorkspace(graph.size());
+        int[] settleOrder = new int[graph.size()];
+        boolean[] isLandmark = new boolean[graph.size()];
+        for (int i = 0; i < this.count; i++) {
+            int landmark;
+            if (selection == Selection.RANDOM) {
+                // a repeated landmark would only add a copy of the same bounds
+                do {
+                    landmark = random.nextInt(graph.size());
+                } while (isLandmark[landmark]);
+                isLandmark[landmark] = true;
+            } else if (selection == Selection.FARTHEST) {
+                landmark = this.farthest(i, random.nextInt(graph.size()), ws);
+            } else {
+                landmark = this.avoid(i, random.nextInt(graph.size()), ws, settleOrder);
+            }
+            this.landmarks[i] = landmark;
+            this.computeDistances(i, ws);
+        }
+    }
+
+    private LandmarkTable(CSRGraph graph, int[] landmarks, double[] fromLandmark, double[] toLandmark) {
+        this.graph = graph;
+        this.count = landmarks.length;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Runs Dijkstra from source over all edges (or all reversed edges) and
+     * records the settle order.
+     * @return the number of vertices settled
+     */
+    private int fullSearch(int source, boolean reverse, SearchWorkspace ws, int[] settleOrder) {
+        CSRGraph g = this.graph;
+        int[] offsets = reverse ? g.reverseOffsets : g.offsets;
+        int[] targets = reverse ? g.reverseTargets : g.targets;
+        double[] weights = reverse ? g.reverseWeights : g.weights;
+
+        ws.reset();
+        ws.reach(source, 0.0, -1);
+        ws.push(source, 0.0);
+        while (!ws.isHeapEmpty()) {
+            double d = ws.peekKey();
+            int v = ws.pop();
+            if (settleOrder != null) {
+                settleOrder[ws.settled] = v;
+            }
+            ws.settled++;
+
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int u = targets[e];
+                double newDistance = d + weights[e];
+                if (newDistance < ws.distance(u)) {
+                    ws.reach(u, newDistance, v);
+                    ws.push(u, newDistance);
+                }
+            }
+        }
+        return ws.settled;
+    }
+
+    private void computeDistances(int i, SearchWorkspace ws) {
+        int n = this.graph.size();
+        this.fullSearch(this.landmarks[i], false, ws, null);
+        for (int v = 0; v < n; v++) {
+            this.fromLandmark[v * this.count + i] = ws.distance(v);
+        }
+        this.fullSearch(this.landmarks[i], true, ws, null);
+        for (int v = 0; v < n; v++) {
+            this.toLandmark[v * this.count + i] = ws.distance(v);
+        }
+    }
+
+    /**
+     * Returns the vertex farthest from the first picked landmarks, or from
+     * start if none have been picked. Unreachable vertices count as farthest,
+     * so every component of the map eventually gets a landmark.
+     */
+    private int farthest(int picked, int start, SearchWorkspace ws) {
+        int n = this.graph.size();
+        if (picked == 0) {
+            this.fullSearch(start, false, ws, null);
+        }
+
+        int best = start;
+        double bestDist = -1;
+        for (int v = 0; v < n; v++) {
+            double d;
+            if (picked == 0) {
+                d = ws.distance(v);
+            } else {
+                d = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < picked; i++) {
+                    d = Math.min(d, this.fromLandmark[v * this.count + i]);
+                }
+            }
+            if (d > bestDist) {
+                best = v;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a landmark chosen by the avoid heuristic. Grows a shortest path
+     * tree from root and weighs each vertex by how far its current lower bound
+     * from root falls short of its real distance. Subtrees that already contain
+     * a landmark weigh nothing. The landmark is the leaf reached by walking
+     * down from root, always into the heaviest subtree.
+     */
+    private int avoid(int picked, int root, SearchWorkspace ws, int[] settleOrder) {
+        int n = this.graph.size();
+        int settled = this.fullSearch(root, false, ws, settleOrder);
+
+        boolean[] isLandmark = new boolean[n];
+        for (int i = 0; i < picked; i++) {
+            isLandmark[this.landmarks[i]] = true;
+        }
+
+        double[] size = new double[n];
+        boolean[] covered = new boolean[n];
+        int[] heaviestChild = new int[n];
+        for (int v = 0; v < n; v++) {
+            heaviestChild[v] = -1;
+        }
+        for (int j = settled - 1; j >= 0; j--) {
+            int v = settleOrder[j];
+            size[v] += ws.dist[v] - this.lowerBound(root, v, picked);
+            covered[v] |= isLandmark[v];
+            if (covered[v]) {
+                size[v] = 0;
+            }
+
+            int p = ws.parent[v];
+            if (p >= 0) {
+                size[p] += size[v];
+                covered[p] |= covered[v];
+                if (heaviestChild[p] < 0 || size[v] > size[heaviestChild[p]]) {
+                    heaviestChild[p] = v;
+                }
+            }
+        }
+
+        int curr = root;
+        while (heaviestChild[curr] >= 0 && size[heaviestChild[curr]] > 0) {
+            curr = heaviestChild[curr];
+        }
+        return curr;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     * @return the number of landmarks
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the vertex of landmark i.
+     * @param i the landmark number
+     * @return the vertex index of landmark i
+     */
+    public int landmark(int i) {
+        return this.landmarks[i];
+    }
+
+    /**
+     * Returns a lower bound on the length of any path from v to t.
+     * @param v the vertex to estimate from
+     * @param t the target vertex
+     * @return a lower bound on the distance from v to t
+     */
+    public double lowerBound(int v, int t) {
+        return this.lowerBound(v, t, this.count);
+    }
+
+    private double lowerBound(int v, int t, int landmarkCount) {
+        double bound = 0;
+        int vBase = v * this.count;
+        int tBase = t * this.count;
+        for (int i = 0; i < landmarkCount; i++) {
+            double fromV = this.fromLandmark[vBase + i];
+            double fromT = this.fromLandmark[tBase + i];
+            if (fromT - fromV > bound && fromV != Double.POSITIVE_INFINITY) {
+                bound = fromT - fromV;
+            }
+            double toV = this.toLandmark[vBase + i];
+            double toT = this.toLandmark[tBase + i];
+            if (toV - toT > bound && toT != Double.POSITIVE_INFINITY) {
+                bound = toV - toT;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Returns a hash of the edges of graph and their weights, so a table is
+     * not reused for a map whose roads have the same shape but different
+     * lengths.
+     */
+    private static long edgeChecksum(CSRGraph graph) {
+        long h = 1;
+        for (int e = 0; e < graph.targets.length; e++) {
+            h = 31 * h + graph.targets[e];
+            h = 31 * h + Double.doubleToLongBits(graph.weights[e]);
+        }
+        return h;
+    }
+
+    /**
+     * Writes this table to filename, tagged with the shape and edge weights
+     * of the snapshot it was computed for.
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(this.graph.size());
+            out.writeInt(this.graph.edgeCount());
+            out.writeLong(edgeChecksum(this.graph));
+            out.writeInt(this.count);
+            for (int i = 0; i < this.count; i++) {
+                out.writeLong(this.graph.id(this.landmarks[i]));
+            }
+            for (int i = 0; i < this.graph.size(); i++) {
+                out.writeLong(this.graph.id(i));
+            }
+            for (int i = 0; i < this.fromLandmark.length; i++) {
+                out.writeDouble(this.fromLandmark[i]);
+            }
+            for (int i = 0; i < this.toLandmark.length; i++) {
+                out.writeDouble(this.toLandmark[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by save for the same map.
+     * @param filename the file to read
+     * @param graph the snapshot the table was computed for
+     * @return the table in filename, or null if it was computed for a different map
+     * @throws IOException if the file cannot be read
+     */
+    public static LandmarkTable load(String filename, CSRGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != graph.size() || in.readInt() != graph.edgeCount()
+                    || in.readLong() != edgeChecksum(graph)) {
+                return null;
+            }
+            int count = in.readInt();
+            int[] landmarks = new int[count];
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = graph.indexOf(in.readLong());
+            }
+            for (int i = 0; i < graph.size(); i++) {
+                if (in.readLong() != graph.id(i)) {
+                    return null;
+                }
+            }
+
+            double[] fromLandmark = new double[graph.size() * count];
+            double[] toLandmark = new double[graph.size() * count];
+            for (int i = 0; i < fromLandmark.length; i++) {
+                fromLandmark[i] = in.readDouble();
+            }
+            for (int i = 0; i < toLandmark.length; i++) {
+                toLandmark[i] = in.readDouble();
+            }
+            return new LandmarkTable(graph, landmarks, fromLandmark, toLandmark);
+        }
+    }
+}
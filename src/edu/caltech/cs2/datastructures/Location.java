@@ -15,6 +15,10 @@ public class Location {
     public final long id;
     public final double lat;
     public final double lon;
+    // the coordinates in radians and the cosine of the latitude, for the distance kernels
+    public final double latRadians;
+    public final double lonRadians;
+    public final double cosLat;
     public final String amenity;
     public String name;
     public final String address;
@@ -24,10 +28,18 @@ public class Location {
 
     public Location(long id, double latitude, double longitude,
                     String name, String addr, String amenity, String shop, String type) {
+        this(id, latitude, longitude, name, addr, amenity, shop, type.equals("building") ? Type.BUILDING : Type.WAYPOINT);
+    }
+
+    Location(long id, double latitude, double longitude,
+             String name, String addr, String amenity, String shop, Type type) {
         this.id = id;
         this.lat = latitude;
         this.lon = longitude;
-        this.type = type.equals("building") ? Type.BUILDING : Type.WAYPOINT;
+        this.latRadians = Math.toRadians(latitude);
+        this.lonRadians = Math.toRadians(longitude);
+        this.cosLat = Math.cos(this.latRadians);
+        this.type = type;
         this.amenity = amenity;
         this.shop = shop;
         this.name = name;
@@ -42,6 +54,9 @@ public class Location {
         this.id = Long.parseLong(e.get("id").getAsString());
         this.lat = e.get("lat").getAsDouble();
         this.lon = e.get("lon").getAsDouble();
+        this.latRadians = Math.toRadians(this.lat);
+        this.lonRadians = Math.toRadians(this.lon);
+        this.cosLat = Math.cos(this.latRadians);
         String[] props = new String[5];
 
         int i = 0;
@@ -71,20 +86,21 @@ public class Location {
     }
 
     public double getDistance(double lat, double lon) {
-        double dLat = Math.toRadians(lat - this.lat);
-        double dLon = Math.toRadians(lon - this.lon);
-        return 2 * EARTH_RAD_FT * Math.asin(Math.sqrt(
-                Math.pow(Math.sin(dLat / 2), 2) + Math.pow(Math.sin(dLon / 2), 2) *
-                        Math.cos(Math.toRadians(this.lat)) *
-                        Math.cos(Math.toRadians(lat))));
+        double latRadians = Math.toRadians(lat);
+        return Distances.haversine(this.latRadians, this.lonRadians, this.cosLat,
+                latRadians, Math.toRadians(lon), Math.cos(latRadians));
     }
 
     public double getDistance(Location other) {
-        return this.getDistance(other.lat, other.lon);
+        return Distances.haversine(this.latRadians, this.lonRadians, this.cosLat,
+                other.latRadians, other.lonRadians, other.cosLat);
     }
 
     public static double getDistance(double lat1, double lon1, double lat2, double lon2) {
-        return new Location(0, lat1, lon1, null, null, null, null, "building").getDistance(lat2, lon2);
+        double lat1Radians = Math.toRadians(lat1);
+        double lat2Radians = Math.toRadians(lat2);
+        return Distances.haversine(lat1Radians, Math.toRadians(lon1), Math.cos(lat1Radians),
+                lat2Radians, Math.toRadians(lon2), Math.cos(lat2Radians));
     }
 
     @Override
@@ -0,0 +1,203 @@
+package edu.caltech.cs2.datastructures;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Every location of a map, stored by column instead of as Location objects.
+ *
+ * Slot i holds one location: its id in ids[i], its coordinates in lat[i] and
+ * lon[i], its Location.Type ordinal in type[i], and its name, address,
+ * amenity and shop as references into a StringPool. Most locations are
+ * waypoints with no strings at all, so a location costs about 50 bytes
+ * here instead of a Location object and its strings. A Location is only
+ * built when location(i) is called, and is not kept.
+ */
+public class LocationStore {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final Location.Type[] TYPES = Location.Type.values();
+
+    private final StringPool strings;
+    private long[] ids;
+    private double[] lat;
+    private double[] lon;
+    private byte[] type;
+    private int[] name;
+    private int[] address;
+    private int[] amenity;
+    private int[] shop;
+    private int size;
+
+    public LocationStore() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty store.
+     * @param offHeap whether to keep the string pool outside the Java heap
+     */
+    public LocationStore(boolean offHeap) {
+        this.strings = new StringPool(offHeap);
+        this.ids = new long[DEFAULT_CAPACITY];
+        this.lat = new double[DEFAULT_CAPACITY];
+        this.lon = new double[DEFAULT_CAPACITY];
+        this.type = new byte[DEFAULT_CAPACITY];
+        this.name = new int[DEFAULT_CAPACITY];
+        this.address = new int[DEFAULT_CAPACITY];
+        this.amenity = new int[DEFAULT_CAPACITY];
+        this.shop = new int[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Stores a location in a new slot.
+     * @param loc the location to store
+     * @return the slot loc was stored in
+     */
+    public int add(Location loc) {
+        int slot = this.newSlot();
+        this.set(slot, loc);
+        return slot;
+    }
+
+    /**
+     * Stores a location parsed from the JSON form the data files use, without
+     * building a Location for it.
+     * @param e the JSON object of the location
+     * @return the slot the location was stored in
+     */
+    public int add(JsonObject e) {
+        int slot = this.newSlot();
+        this.set(slot, e);
+        return slot;
+    }
+
+    /**
+     * Replaces the location in a slot with one parsed from JSON.
+     * @param slot the slot to overwrite
+     * @param e the JSON object of the location
+     */
+    public void set(int slot, JsonObject e) {
+        this.ids[slot] = Long.parseLong(e.get("id").getAsString());
+        this.lat[slot] = e.get("lat").getAsDouble();
+        this.lon[slot] = e.get("lon").getAsDouble();
+        this.type[slot] = (byte) (e.get("type").getAsString().equals("building") ?
+                Location.Type.BUILDING : Location.Type.WAYPOINT).ordinal();
+        this.name[slot] = this.strings.intern(e.has("name") ? e.get("name").getAsString() : null);
+        this.address[slot] = this.strings.intern(e.has("address") ? e.get("address").getAsString() : null);
+        this.amenity[slot] = this.strings.intern(e.has("amenity") ? e.get("amenity").getAsString() : null);
+        this.shop[slot] = this.strings.intern(e.has("shop") ? e.get("shop").getAsString() : null);
+    }
+
+    /**
+     * Replaces the location in a slot.
+     * @param slot the slot to overwrite
+     * @param loc the location to store
+     */
+    public void set(int slot, Location loc) {
+        this.ids[slot] = loc.id;
+        this.lat[slot] = loc.lat;
+        this.lon[slot] = loc.lon;
+        this.type[slot] = (byte) loc.type.ordinal();
+        this.name[slot] = this.strings.intern(loc.name);
+        this.address[slot] = this.strings.intern(loc.address);
+        this.amenity[slot] = this.strings.intern(loc.amenity);
+        this.shop[slot] = this.strings.intern(loc.shop);
+    }
+
+    private int newSlot() {
+        if (this.size == this.ids.length) {
+            int capacity = this.ids.length * 2;
+            long[] newIds = new long[capacity];
+            double[] newLat = new double[capacity];
+            double[] newLon = new double[capacity];
+            byte[] newType = new byte[capacity];
+            int[] newName = new int[capacity];
+            int[] newAddress = new int[capacity];
+            int[] newAmenity = new int[capacity];
+            int[] newShop = new int[capacity];
+            for (int i = 0; i < this.size; i++) {
+                newIds[i] = this.ids[i];
+                newLat[i] = this.lat[i];
+                newLon[i] = this.lon[i];
+                newType[i] = this.type[i];
+                newName[i] = this.name[i];
+                newAddress[i] = this.address[i];
+                newAmenity[i] = this.amenity[i];
+                newShop[i] = this.shop[i];
+            }
+            this.ids = newIds;
+            this.lat = newLat;
+            this.lon = newLon;
+            this.type = newType;
+            this.name = newName;
+            this.address = newAddress;
+            this.amenity = newAmenity;
+            this.shop = newShop;
+        }
+        this.size++;
+        return this.size - 1;
+    }
+
+    /**
+     * Builds the Location stored in a slot.
+     * @param slot the slot to read
+     * @return a new Location equal to the one stored in slot
+     */
+    public Location location(int slot) {
+        return new Location(this.ids[slot], this.lat[slot], this.lon[slot],
+                this.strings.get(this.name[slot]), this.strings.get(this.address[slot]),
+                this.strings.get(this.amenity[slot]), this.strings.get(this.shop[slot]), TYPES[this.type[slot]]);
+    }
+
+    /**
+     * Returns the id of the location in a slot.
+     * @param slot the slot to read
+     * @return the OSM id of the location
+     */
+    public long id(int slot) {
+        return this.ids[slot];
+    }
+
+    /**
+     * Returns the latitude of the location in a slot.
+     * @param slot the slot to read
+     * @return the latitude of the location, in degrees
+     */
+    public double lat(int slot) {
+        return this.lat[slot];
+    }
+
+    /**
+     * Returns the longitude of the location in a slot.
+     * @param slot the slot to read
+     * @return the longitude of the location, in degrees
+     */
+    public double lon(int slot) {
+        return this.lon[slot];
+    }
+
+    /**
+     * Returns the type of the location in a slot.
+     * @param slot the slot to read
+     * @return the type of the location
+     */
+    public Location.Type type(int slot) {
+        return TYPES[this.type[slot]];
+    }
+
+    /**
+     * Returns the number of used slots.
+     * @return the number of locations stored
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns roughly how many bytes the columns and strings of this store take up.
+     * @return the approximate size of this store, in bytes
+     */
+    public long byteSize() {
+        return (long) this.ids.length * (8 + 8 + 8 + 1 + 4 * 4) + this.strings.byteSize();
+    }
+}
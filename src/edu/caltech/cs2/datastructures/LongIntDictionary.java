@@ -0,0 +1,296 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.ICollection;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open-addressing hash map from primitive long keys to primitive int values.
+ * Keys and values are stored in parallel arrays with linear probing, so lookups
+ * never box or allocate. The key 0 marks an empty slot in the table and is
+ * stored separately.
+ *
+ * The dictionary also implements IDictionary over boxed keys and values, so it
+ * can stand in for any other dictionary; getOrDefault, putLong and the long
+ * overloads are the fast path. Like their boxed counterparts, putLong and
+ * remove(long) return the previous value, with 0 standing for none; use
+ * containsKey where a stored 0 has to be told apart from a missing key.
+ */
+public class LongIntDictionary implements IDictionary<Long, Integer> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.75;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold expectedSize keys without resizing.
+     * @param expectedSize the number of keys expected to be stored
+     */
+    public LongIntDictionary(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOf(long key) {
+        int i = mix(key) & this.mask;
+        while (this.keys[i] != 0 && this.keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the value associated with key, or defaultValue if key is not present.
+     * @param key the key to look up
+     * @param defaultValue the value to return if key is not present
+     * @return the value associated with key, or defaultValue
+     */
+    public int getOrDefault(long key, int defaultValue) {
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : defaultValue;
+        }
+        int i = this.slotOf(key);
+        return this.keys[i] == key ? this.values[i] : defaultValue;
+    }
+
+    /**
+     * Returns whether key is present in this dictionary.
+     * @param key the key to look up
+     * @return true if key is present and false otherwise
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return this.hasZeroKey;
+        }
+        return this.keys[this.slotOf(key)] == key;
+    }
+
+    /**
+     * Associates value with key, replacing any previous value. Named apart
+     * from put so that a call mixing a long key with an Integer value, or a
+     * Long key with an int value, is not ambiguous.
+     * @param key the key to store
+     * @param value the value to associate with key
+     * @return the previous value associated with key, or 0 if there was none
+     */
+    public int putLong(long key, int value) {
+        if (key == 0) {
+            int old = this.zeroValue;
+            if (!this.hasZeroKey) {
+                this.hasZeroKey = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return old;
+        }
+
+        int i = this.slotOf(key);
+        if (this.keys[i] == key) {
+            int old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        if (this.size > this.keys.length * MAX_LOAD) {
+            this.resize();
+        }
+        return 0;
+    }
+
+    /**
+     * Removes key and its value, if present.
+     * @param key the key to remove
+     * @return the value that was associated with key, or 0 if there was none
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            int old = this.zeroValue;
+            if (this.hasZeroKey) {
+                this.hasZeroKey = false;
+                this.size--;
+            }
+            this.zeroValue = 0;
+            return old;
+        }
+
+        int i = this.slotOf(key);
+        if (this.keys[i] != key) {
+            return 0;
+        }
+        int old = this.values[i];
+        this.closeGap(i);
+        this.size--;
+        return old;
+    }
+
+    /**
+     * Empties slot i, then moves back each later key of the same run that
+     * would otherwise no longer be reachable from its home slot.
+     */
+    private void closeGap(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & this.mask;
+            if (this.keys[j] == 0) {
+                break;
+            }
+            int home = mix(this.keys[j]) & this.mask;
+            // the key at j can fill the gap at i unless its home lies cyclically in (i, j]
+            if (((j - home) & this.mask) >= ((j - i) & this.mask)) {
+                this.keys[i] = this.keys[j];
+                this.values[i] = this.values[j];
+                i = j;
+            }
+        }
+        this.keys[i] = 0;
+        this.values[i] = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new int[oldValues.length * 2];
+        this.mask = this.keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = this.slotOf(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in this dictionary.
+     * @return the number of keys
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Integer get(Long key) {
+        if (!this.containsKey(key.longValue())) {
+            return null;
+        }
+        return this.getOrDefault(key.longValue(), 0);
+    }
+
+    @Override
+    public Integer put(Long key, Integer value) {
+        Integer old = this.get(key);
+        this.putLong(key.longValue(), value.intValue());
+        return old;
+    }
+
+    @Override
+    public Integer remove(Long key) {
+        Integer old = this.get(key);
+        this.remove(key.longValue());
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return this.containsKey(key.longValue());
+    }
+
+    @Override
+    public boolean containsValue(Integer value) {
+        if (value == null) {
+            return false;
+        }
+        if (this.hasZeroKey && this.zeroValue == value) {
+            return true;
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0 && this.values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ICollection<Long> keys() {
+        ICollection<Long> keys = new LinkedDeque<>();
+        for (Long key : this) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public ICollection<Integer> values() {
+        ICollection<Integer> values = new LinkedDeque<>();
+        if (this.hasZeroKey) {
+            values.add(this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                values.add(this.values[i]);
+            }
+        }
+        return values;
+    }
+
+    private class LIIterator implements Iterator<Long> {
+        // -1 stands for the zero key, which comes first if present
+        private int index = LongIntDictionary.this.hasZeroKey ? -1 : this.skipEmpty(0);
+
+        private int skipEmpty(int i) {
+            while (i < LongIntDictionary.this.keys.length && LongIntDictionary.this.keys[i] == 0) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < LongIntDictionary.this.keys.length;
+        }
+
+        @Override
+        public Long next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long key = this.index < 0 ? 0 : LongIntDictionary.this.keys[this.index];
+            this.index = this.skipEmpty(this.index + 1);
+            return key;
+        }
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new LIIterator();
+    }
+}
@@ -0,0 +1,287 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.ICollection;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open-addressing hash map from primitive long keys to object values.
+ * Keys and values are stored in parallel arrays with linear probing, so lookups
+ * never box the key or allocate. The key 0 marks an empty slot in the table and is
+ * stored separately.
+ *
+ * The dictionary also implements IDictionary over boxed keys, so it can
+ * stand in for any other dictionary; putLong and the long overloads are the
+ * fast path.
+ */
+public class LongObjectDictionary<V> implements IDictionary<Long, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.75;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public LongObjectDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold expectedSize keys without resizing.
+     * @param expectedSize the number of keys expected to be stored
+     */
+    public LongObjectDictionary(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOf(long key) {
+        int i = mix(key) & this.mask;
+        while (this.keys[i] != 0 && this.keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the value associated with key, or null if key is not present.
+     * @param key the key to look up
+     * @return the value associated with key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0) {
+            return this.zeroValue;
+        }
+        int i = this.slotOf(key);
+        return this.keys[i] == key ? (V) this.values[i] : null;
+    }
+
+    /**
+     * Returns whether key is present in this dictionary.
+     * @param key the key to look up
+     * @return true if key is present and false otherwise
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return this.hasZeroKey;
+        }
+        return this.keys[this.slotOf(key)] == key;
+    }
+
+    /**
+     * Associates value with key, replacing any previous value. Named apart
+     * from put so that a call with a long key and a value that needs boxing
+     * is not ambiguous.
+     * @param key the key to store
+     * @param value the value to associate with key
+     * @return the previous value associated with key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V putLong(long key, V value) {
+        if (key == 0) {
+            V old = this.zeroValue;
+            if (!this.hasZeroKey) {
+                this.hasZeroKey = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return old;
+        }
+
+        int i = this.slotOf(key);
+        if (this.keys[i] == key) {
+            V old = (V) this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        if (this.size > this.keys.length * MAX_LOAD) {
+            this.resize();
+        }
+        return null;
+    }
+
+    /**
+     * Removes key and its value, if present.
+     * @param key the key to remove
+     * @return the value that was associated with key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            V old = this.zeroValue;
+            if (this.hasZeroKey) {
+                this.hasZeroKey = false;
+                this.size--;
+            }
+            this.zeroValue = null;
+            return old;
+        }
+
+        int i = this.slotOf(key);
+        if (this.keys[i] != key) {
+            return null;
+        }
+        V old = (V) this.values[i];
+        this.closeGap(i);
+        this.size--;
+        return old;
+    }
+
+    /**
+     * Empties slot i, then moves back each later key of the same run that
+     * would otherwise no longer be reachable from its home slot.
+     */
+    private void closeGap(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & this.mask;
+            if (this.keys[j] == 0) {
+                break;
+            }
+            int home = mix(this.keys[j]) & this.mask;
+            // the key at j can fill the gap at i unless its home lies cyclically in (i, j]
+            if (((j - home) & this.mask) >= ((j - i) & this.mask)) {
+                this.keys[i] = this.keys[j];
+                this.values[i] = this.values[j];
+                i = j;
+            }
+        }
+        this.keys[i] = 0;
+        this.values[i] = null;
+    }
+
+    private void resize() {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new Object[oldValues.length * 2];
+        this.mask = this.keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = this.slotOf(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in this dictionary.
+     * @return the number of keys
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public V get(Long key) {
+        return this.get(key.longValue());
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return this.putLong(key.longValue(), value);
+    }
+
+    @Override
+    public V remove(Long key) {
+        return this.remove(key.longValue());
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return this.containsKey(key.longValue());
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (this.hasZeroKey && (value == null ? this.zeroValue == null : value.equals(this.zeroValue))) {
+            return true;
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0 && (value == null ? this.values[i] == null : value.equals(this.values[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ICollection<Long> keys() {
+        ICollection<Long> keys = new LinkedDeque<>();
+        for (Long key : this) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ICollection<V> values() {
+        ICollection<V> values = new LinkedDeque<>();
+        if (this.hasZeroKey) {
+            values.add(this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                values.add((V) this.values[i]);
+            }
+        }
+        return values;
+    }
+
+    private class LOIterator implements Iterator<Long> {
+        // -1 stands for the zero key, which comes first if present
+        private int index = LongObjectDictionary.this.hasZeroKey ? -1 : this.skipEmpty(0);
+
+        private int skipEmpty(int i) {
+            while (i < LongObjectDictionary.this.keys.length && LongObjectDictionary.this.keys[i] == 0) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < LongObjectDictionary.this.keys.length;
+        }
+
+        @Override
+        public Long next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long key = this.index < 0 ? 0 : LongObjectDictionary.this.keys[this.index];
+            this.index = this.skipEmpty(this.index + 1);
+            return key;
+        }
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new LOIterator();
+    }
+}
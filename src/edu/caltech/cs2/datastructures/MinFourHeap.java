@@ -19,7 +19,7 @@ public class MinFourHeap<E> implements IPriorityQueue<E> {
     public MinFourHeap() {
         this.size = 0;
         this.data = new PQElement[DEFAULT_CAPACITY];
-        this.keyToIndexMap = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        this.keyToIndexMap = new RobinHoodHashDictionary<>();
     }
 
     private int getSmallestChild(int index) {
@@ -38,12 +38,11 @@ public class MinFourHeap<E> implements IPriorityQueue<E> {
 
     @Override
     public void increaseKey(PQElement<E> key) {
-        if (key != null && keyToIndexMap.containsKey(key.data)) {
-            int index = keyToIndexMap.get(key.data);
+        Integer index = key == null ? null : keyToIndexMap.get(key.data);
+        if (index != null) {
             data[index] = key;
-            keyToIndexMap.put(key.data, index);
 
-            int currentIndex = keyToIndexMap.get(key.data);
+            int currentIndex = index;
             int childIndex = getSmallestChild(currentIndex);
             while (childIndex < this.size && data[childIndex] != null && data[childIndex].priority < data[currentIndex].priority){
                 PQElement<E> parent = data[currentIndex];
@@ -63,12 +62,11 @@ public class MinFourHeap<E> implements IPriorityQueue<E> {
 
     @Override
     public void decreaseKey(PQElement<E> key) {
-        if (key != null && keyToIndexMap.containsKey(key.data)) {
-            int index = keyToIndexMap.get(key.data);
+        Integer index = key == null ? null : keyToIndexMap.get(key.data);
+        if (index != null) {
             data[index] = key;
-            keyToIndexMap.put(key.data, index);
 
-            int currentIndex = keyToIndexMap.get(key.data);
+            int currentIndex = index;
             int parentIndex = (currentIndex - 1) / 4;
 
             while (currentIndex > 0 && data[currentIndex].priority < data[parentIndex].priority) {
@@ -71,11 +71,12 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
     @Override
     public V remove(K key) {
         V removed = null;
-        Node<K,V> curr = this.head;
         if (!containsKey(key)){
             return null;
         }
-        else if (curr.next == null && curr.prev == null){
+        // containsKey moved key to the front, so the walk has to start from the new head
+        Node<K,V> curr = this.head;
+        if (curr.next == null && curr.prev == null){
             removed = this.head.value;
             this.head = null;
             this.size--;
@@ -0,0 +1,28 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * The point on a road segment closest to a point on the map.
+ */
+public class RoadSnap {
+    /** One end of the segment. */
+    public final Location from;
+    /** The other end of the segment. */
+    public final Location to;
+    /** How far along the segment the point is, from 0 at from to 1 at to. */
+    public final double fraction;
+    /** The latitude of the point on the segment. */
+    public final double lat;
+    /** The longitude of the point on the segment. */
+    public final double lon;
+    /** The distance from the query point to the point on the segment, in feet. */
+    public final double distance;
+
+    public RoadSnap(Location from, Location to, double fraction, double lat, double lon, double distance) {
+        this.from = from;
+        this.to = to;
+        this.fraction = fraction;
+        this.lat = lat;
+        this.lon = lon;
+        this.distance = distance;
+    }
+}
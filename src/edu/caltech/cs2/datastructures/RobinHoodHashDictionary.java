@@ -0,0 +1,272 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.ICollection;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open-addressing hash dictionary with Robin Hood linear probing.
+ *
+ * Keys and values are stored in parallel arrays whose length is a power of
+ * two, next to the mixed hash of each key and how far the key sits from its
+ * home slot. On insert, an entry that has probed farther than the entry in a
+ * slot takes the slot and the displaced entry keeps probing, so probe lengths
+ * stay short and even. A lookup can stop as soon as it passes an entry closer
+ * to home than it has probed, since its key would have displaced that entry.
+ * Removal shifts the entries after the removed one back a slot until one is
+ * at home, so no tombstones are left behind.
+ *
+ * Null keys are not supported.
+ */
+public class RobinHoodHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.75;
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    // how many slots past its home slot each entry sits, or -1 for an empty slot
+    private int[] distances;
+    private int mask;
+    private int size;
+
+    public RobinHoodHashDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold expectedSize keys without resizing.
+     * @param expectedSize the number of keys expected to be stored
+     */
+    public RobinHoodHashDictionary(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        this.allocate(capacity);
+        this.size = 0;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.distances = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.distances[i] = -1;
+        }
+        this.mask = capacity - 1;
+    }
+
+    private static int mix(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot holding key, or -1 if key is not present.
+     */
+    private int slotOf(Object key) {
+        int h = mix(key);
+        int i = h & this.mask;
+        for (int d = 0; d <= this.distances[i]; d++) {
+            if (this.hashes[i] == h && this.keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int i = this.slotOf(key);
+        return i < 0 ? null : (V) this.values[i];
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return this.slotOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int h = mix(key);
+        int i = h & this.mask;
+        int d = 0;
+        while (d <= this.distances[i]) {
+            if (this.hashes[i] == h && this.keys[i].equals(key)) {
+                V old = (V) this.values[i];
+                this.values[i] = value;
+                return old;
+            }
+            i = (i + 1) & this.mask;
+            d++;
+        }
+
+        if (this.size + 1 > this.keys.length * MAX_LOAD) {
+            this.resize();
+            this.insert(key, value, h);
+        } else {
+            this.insertFrom(i, d, key, value, h);
+        }
+        this.size++;
+        return null;
+    }
+
+    /**
+     * Inserts a key known not to be present.
+     */
+    private void insert(Object key, Object value, int h) {
+        int i = h & this.mask;
+        int d = 0;
+        while (d <= this.distances[i]) {
+            i = (i + 1) & this.mask;
+            d++;
+        }
+        this.insertFrom(i, d, key, value, h);
+    }
+
+    /**
+     * Places an entry at slot i, d slots from its home, where every entry
+     * before i on its probe is at least as far from home. Each entry it
+     * displaces moves on to the next slot that is empty or closer to home.
+     */
+    private void insertFrom(int i, int d, Object key, Object value, int h) {
+        while (this.distances[i] >= 0) {
+            if (this.distances[i] < d) {
+                Object k = this.keys[i];
+                Object v = this.values[i];
+                int hash = this.hashes[i];
+                int dist = this.distances[i];
+                this.keys[i] = key;
+                this.values[i] = value;
+                this.hashes[i] = h;
+                this.distances[i] = d;
+                key = k;
+                value = v;
+                h = hash;
+                d = dist;
+            }
+            i = (i + 1) & this.mask;
+            d++;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.hashes[i] = h;
+        this.distances[i] = d;
+    }
+
+    private void resize() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int[] oldHashes = this.hashes;
+        int[] oldDistances = this.distances;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDistances[i] >= 0) {
+                this.insert(oldKeys[i], oldValues[i], oldHashes[i]);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int i = this.slotOf(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = (V) this.values[i];
+
+        int next = (i + 1) & this.mask;
+        while (this.distances[next] > 0) {
+            this.keys[i] = this.keys[next];
+            this.values[i] = this.values[next];
+            this.hashes[i] = this.hashes[next];
+            this.distances[i] = this.distances[next] - 1;
+            i = next;
+            next = (next + 1) & this.mask;
+        }
+        this.keys[i] = null;
+        this.values[i] = null;
+        this.distances[i] = -1;
+        this.size--;
+        return old;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.distances[i] >= 0 && (value == null ? this.values[i] == null : value.equals(this.values[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ICollection<K> keys() {
+        ICollection<K> keys = new LinkedDeque<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.distances[i] >= 0) {
+                keys.add((K) this.keys[i]);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ICollection<V> values() {
+        ICollection<V> values = new LinkedDeque<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.distances[i] >= 0) {
+                values.add((V) this.values[i]);
+            }
+        }
+        return values;
+    }
+
+    private class RHIterator implements Iterator<K> {
+        private int index = this.skipEmpty(0);
+
+        private int skipEmpty(int i) {
+            while (i < RobinHoodHashDictionary.this.keys.length && RobinHoodHashDictionary.this.distances[i] < 0) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < RobinHoodHashDictionary.this.keys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K key = (K) RobinHoodHashDictionary.this.keys[this.index];
+            this.index = this.skipEmpty(this.index + 1);
+            return key;
+        }
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new RHIterator();
+    }
+}
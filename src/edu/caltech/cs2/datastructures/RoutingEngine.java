@@ -0,0 +1,501 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+/**
+ * Answers shortest path queries over a CSRGraph snapshot.
+ *
+ * Each thread searches in its own SearchWorkspace, which is allocated on the
+ * thread's first query and reused afterwards, so a query does no allocation
+ * beyond the returned path.
+ */
+public class RoutingEngine {
+    private static final int DEFAULT_LANDMARKS = 16;
+
+    /**
+     * The search strategies a route can be computed with. All of them
+     * return paths of the same length.
+     */
+    public enum Algorithm {
+        DIJKSTRA,
+        ASTAR,
+        BIDIRECTIONAL,
+        CH,
+        ALT;
+
+        /**
+         * Returns the algorithm with the given name, ignoring case.
+         * @param name the name of the algorithm
+         * @return the named algorithm, or DIJKSTRA if name is null or unknown
+         */
+        public static Algorithm parse(String name) {
+            if (name != null) {
+                for (Algorithm a : Algorithm.values()) {
+                    if (a.name().equalsIgnoreCase(name)) {
+                        return a;
+                    }
+                }
+            }
+            return DIJKSTRA;
+        }
+    }
+
+    /**
+     * The worklists a search can use. Both give the same paths.
+     */
+    public enum Queue {
+        /** A 4-ary IntDoubleIndexedHeap. */
+        HEAP,
+        /** An IntRadixHeap over distances in centi-feet. */
+        RADIX
+    }
+
+    private final CSRGraph graph;
+    private final Queue queue;
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+    private ContractionHierarchy hierarchy;
+    private LandmarkTable landmarks;
+    private HubLabels hubLabels;
+
+    public RoutingEngine(CSRGraph graph) {
+        this(graph, Queue.HEAP);
+    }
+
+    /**
+     * Creates an engine whose searches use the given worklist. The
+     * contraction hierarchy and landmark table keep using the heap, since
+     * contraction pops its keys out of order.
+     * @param graph the snapshot to search
+     * @param queue the worklist for queries
+     */
+    public RoutingEngine(CSRGraph graph, Queue queue) {
+        this.graph = graph;
+        this.queue = queue;
+        boolean radix = queue == Queue.RADIX;
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.size(), radix));
+        this.backwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.size(), radix));
+    }
+
+    /**
+     * Returns the worklist this engine's queries search with.
+     * @return the worklist of this engine
+     */
+    public Queue queue() {
+        return this.queue;
+    }
+
+    /**
+     * Returns the snapshot this engine searches.
+     * @return the snapshot this engine searches
+     */
+    public CSRGraph graph() {
+        return this.graph;
+    }
+
+    /**
+     * Returns the contraction hierarchy of the snapshot, contracting it on
+     * the first call.
+     * @return the contraction hierarchy of the snapshot
+     */
+    public synchronized ContractionHierarchy hierarchy() {
+        if (this.hierarchy == null) {
+            this.hierarchy = new ContractionHierarchy(this.graph);
+        }
+        return this.hierarchy;
+    }
+
+    /**
+     * Returns the hub labels of the snapshot, building them from the
+     * contraction hierarchy on the first call.
+     * @return the hub labels of the snapshot
+     */
+    public synchronized HubLabels hubLabels() {
+        if (this.hubLabels == null) {
+            this.hubLabels = new HubLabels(this.hierarchy());
+        }
+        return this.hubLabels;
+    }
+
+    /**
+     * Returns the landmark table used by ALT queries, picking
+     * DEFAULT_LANDMARKS landmarks by FARTHEST selection on the first call
+     * if none has been set.
+     * @return the landmark table of the snapshot
+     */
+    public synchronized LandmarkTable landmarks() {
+        if (this.landmarks == null) {
+            this.landmarks = new LandmarkTable(this.graph, DEFAULT_LANDMARKS, LandmarkTable.Selection.FARTHEST, 0);
+        }
+        return this.landmarks;
+    }
+
+    /**
+     * Sets the landmark table used by ALT queries.
+     * @param landmarks a landmark table computed for the snapshot of this engine
+     */
+    public synchronized void setLandmarks(LandmarkTable landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Returns the number of vertices settled by this thread's last query.
+     * @return the number of vertices settled by the last query
+     */
+    public int settledCount() {
+        return this.workspaces.get().settled;
+    }
+
+    /**
+     * Returns the length of a shortest path between the start and target
+     * locations, looked up in the hub labels. Buildings other than the
+     * target are never walked through.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return the length of a shortest path, or infinity if there is none
+     */
+    public double distance(Location start, Location target) {
+        int s = this.graph.indexOf(start.id);
+        int t = this.graph.indexOf(target.id);
+        if (s < 0 || t < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return this.hubLabels().distance(s, t);
+    }
+
+    /**
+     * Returns the lengths of shortest paths from every source to every
+     * target, looked up in the hub labels.
+     * @param sources the locations to start paths from
+     * @param targets the locations to end paths at
+     * @return the matrix whose entry [i][j] is the distance from sources[i]
+     *         to targets[j], or infinity if there is no path
+     */
+    public double[][] distanceMatrix(Location[] sources, Location[] targets) {
+        return this.hubLabels().distanceMatrix(this.indicesOf(sources), this.indicesOf(targets));
+    }
+
+    private int[] indicesOf(Location[] locs) {
+        int[] indices = new int[locs.length];
+        for (int i = 0; i < locs.length; i++) {
+            indices[i] = locs[i] == null ? -1 : this.graph.indexOf(locs[i].id);
+        }
+        return indices;
+    }
+
+    /**
+     * Returns a shortest path between the start and target locations
+     * (including the start and target locations). Buildings other than the
+     * target are never walked through.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target, or null if there is none
+     */
+    public IDeque<Location> shortestPath(Location start, Location target) {
+        return this.shortestPath(start, target, Algorithm.DIJKSTRA);
+    }
+
+    /**
+     * Returns a shortest path between the start and target locations
+     * (including the start and target locations), found with algorithm.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @param algorithm the search strategy to use
+     * @return a shortest path between start and target, or null if there is none
+     */
+    public IDeque<Location> shortestPath(Location start, Location target, Algorithm algorithm) {
+        if (algorithm == Algorithm.CH) {
+            return this.hierarchy().shortestPath(start, target);
+        }
+
+        int s = this.graph.indexOf(start.id);
+        int t = this.graph.indexOf(target.id);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+
+        SearchWorkspace ws = this.workspaces.get();
+        if (algorithm == Algorithm.BIDIRECTIONAL) {
+            SearchWorkspace backward = this.backwardWorkspaces.get();
+            int meet = this.bidirectionalSearch(ws, backward, s, t);
+            if (meet < 0) {
+                return null;
+            }
+            IDeque<Location> path = this.path(ws, meet);
+            for (int curr = backward.parent[meet]; curr != -1; curr = backward.parent[curr]) {
+                path.addBack(this.graph.location(curr));
+            }
+            return path;
+        }
+
+        if (!this.search(ws, s, t, algorithm)) {
+            return null;
+        }
+        return this.path(ws, t);
+    }
+
+    /**
+     * Returns a shortest path from a point on a road segment to target. The
+     * path starts at a location for the snapped point, with id -1, which is
+     * joined to both ends of the segment by the parts of the road on either
+     * side of it.
+     * @param start the point on a road to start from
+     * @param target the location to end the path at
+     * @return a shortest path from start to target, or null if there is none
+     */
+    public IDeque<Location> shortestPath(RoadSnap start, Location target) {
+        CSRGraph g = this.graph;
+        int from = g.indexOf(start.from.id);
+        int to = g.indexOf(start.to.id);
+        int t = g.indexOf(target.id);
+        if (from < 0 || to < 0 || t < 0) {
+            return null;
+        }
+
+        SearchWorkspace ws = this.workspaces.get();
+        ws.reset();
+        // the snapped point splits each direction of the road in proportion to fraction
+        this.seed(ws, to, from, start.fraction);
+        this.seed(ws, from, to, 1 - start.fraction);
+        if (!this.run(ws, t, null, false)) {
+            return null;
+        }
+
+        IDeque<Location> path = this.path(ws, t);
+        path.addFront(new Location(-1, start.lat, start.lon, null, null, null, null, "waypoint"));
+        return path;
+    }
+
+    /**
+     * Reaches v from a point on the edge from u to v, the given share of the
+     * edge's length away from v, if that edge exists.
+     */
+    private void seed(SearchWorkspace ws, int u, int v, double share) {
+        CSRGraph g = this.graph;
+        for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+            if (g.targets[e] == v && share * g.weights[e] < ws.distance(v)) {
+                ws.reach(v, share * g.weights[e], -1);
+                ws.push(v, share * g.weights[e]);
+            }
+        }
+    }
+
+    /**
+     * Returns every location whose network distance from start is at most
+     * budget, in order of distance. Runs Dijkstra's algorithm from start and
+     * stops as soon as the closest unsettled location is over budget.
+     * Buildings other than start can be reached but are never walked through.
+     * @param start the location to search from
+     * @param budget the largest distance to include
+     * @return the locations within budget of start, starting with start itself
+     */
+    public IDeque<Location> isochrone(Location start, double budget) {
+        CSRGraph g = this.graph;
+        IDeque<Location> reached = new LinkedDeque<>();
+        int s = g.indexOf(start.id);
+        if (s < 0 || budget < 0) {
+            return reached;
+        }
+
+        SearchWorkspace ws = this.workspaces.get();
+        ws.reset();
+        ws.reach(s, 0.0, -1);
+        ws.push(s, 0.0);
+        while (!ws.isHeapEmpty() && ws.peekKey() <= budget) {
+            double d = ws.peekKey();
+            int v = ws.pop();
+            ws.settled++;
+            reached.addBack(g.location(v));
+            // buildings can end a path but are never walked through
+            if (g.building[v] && v != s) {
+                continue;
+            }
+
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int u = g.targets[e];
+                double newDistance = d + g.weights[e];
+                if (newDistance <= budget && newDistance < ws.distance(u)) {
+                    ws.reach(u, newDistance, v);
+                    ws.push(u, newDistance);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from s until t is settled. For ASTAR and ALT
+     * this is A*, which orders the worklist by distance so far plus a lower
+     * bound on the distance left to t. The bound never overestimates, so the
+     * first time t is settled its distance is optimal.
+     * @param ws the workspace to search in
+     * @param s the source vertex
+     * @param t the target vertex
+     * @param algorithm DIJKSTRA, ASTAR or ALT
+     * @return true if t is reachable from s and false otherwise
+     */
+    boolean search(SearchWorkspace ws, int s, int t, Algorithm algorithm) {
+        LandmarkTable table = algorithm == Algorithm.ALT ? this.landmarks() : null;
+        boolean goalDirected = algorithm == Algorithm.ASTAR || algorithm == Algorithm.ALT;
+        ws.reset();
+        double startKey = goalDirected ? this.heuristic(s, t, table) : 0.0;
+        if (startKey == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        ws.reach(s, 0.0, -1);
+        ws.push(s, startKey);
+        return this.run(ws, t, table, goalDirected);
+    }
+
+    /**
+     * Settles vertices from the worklist of ws until t is settled.
+     * @param ws a workspace whose sources have been reached and pushed
+     * @param t the target vertex
+     * @param table the landmarks to bound with, or null for straight-line only
+     * @param goalDirected whether keys include a lower bound on the distance left
+     * @return true if t is reachable from the sources and false otherwise
+     */
+    private boolean run(SearchWorkspace ws, int t, LandmarkTable table, boolean goalDirected) {
+        CSRGraph g = this.graph;
+        while (!ws.isHeapEmpty()) {
+            int v = ws.pop();
+            double d = ws.dist[v];
+            ws.settled++;
+            if (v == t) {
+                return true;
+            }
+
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int u = g.targets[e];
+                // buildings can end a path but are never walked through
+                if (g.building[u] && u != t) {
+                    continue;
+                }
+
+                double newDistance = d + g.weights[e];
+                if (newDistance < ws.distance(u)) {
+                    double key = goalDirected ? newDistance + this.heuristic(u, t, table) : newDistance;
+                    // an infinite bound means t cannot be reached from u
+                    if (key != Double.POSITIVE_INFINITY) {
+                        ws.reach(u, newDistance, v);
+                        ws.push(u, key);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm forwards from s and backwards from t at the
+     * same time, always expanding the side whose worklist has the smaller
+     * minimum. The best path seen so far has length best; once the two
+     * minimums add up to at least best, no undiscovered path can be shorter.
+     * In the backward workspace, parent points one step closer to t.
+     * @param forward the workspace for the search from s
+     * @param backward the workspace for the search from t
+     * @param s the source vertex
+     * @param t the target vertex
+     * @return the vertex where the shortest path crosses from the forward to
+     *         the backward search, or -1 if t is not reachable from s
+     */
+    int bidirectionalSearch(SearchWorkspace forward, SearchWorkspace backward, int s, int t) {
+        CSRGraph g = this.graph;
+        forward.reset();
+        backward.reset();
+        forward.reach(s, 0.0, -1);
+        forward.push(s, 0.0);
+        backward.reach(t, 0.0, -1);
+        backward.push(t, 0.0);
+
+        double best = s == t ? 0.0 : Double.POSITIVE_INFINITY;
+        int meet = s == t ? s : -1;
+
+        while (true) {
+            double forwardMin = forward.isHeapEmpty() ? Double.POSITIVE_INFINITY : forward.peekKey();
+            double backwardMin = backward.isHeapEmpty() ? Double.POSITIVE_INFINITY : backward.peekKey();
+            if (forwardMin + backwardMin >= best) {
+                break;
+            }
+
+            if (forwardMin <= backwardMin) {
+                int v = forward.pop();
+                forward.settled++;
+                for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                    int u = g.targets[e];
+                    // buildings can end a path but are never walked through
+                    if (g.building[u] && u != t) {
+                        continue;
+                    }
+
+                    double newDistance = forwardMin + g.weights[e];
+                    if (newDistance < forward.distance(u)) {
+                        forward.reach(u, newDistance, v);
+                        forward.push(u, newDistance);
+                        if (newDistance + backward.distance(u) < best) {
+                            best = newDistance + backward.distance(u);
+                            meet = u;
+                        }
+                    }
+                }
+            } else {
+                int v = backward.pop();
+                backward.settled++;
+                for (int e = g.reverseOffsets[v]; e < g.reverseOffsets[v + 1]; e++) {
+                    int u = g.reverseTargets[e];
+                    // buildings can start a path but are never walked through
+                    if (g.building[u] && u != s) {
+                        continue;
+                    }
+
+                    double newDistance = backwardMin + g.reverseWeights[e];
+                    if (newDistance < backward.distance(u)) {
+                        backward.reach(u, newDistance, v);
+                        backward.push(u, newDistance);
+                        if (newDistance + forward.distance(u) < best) {
+                            best = newDistance + forward.distance(u);
+                            meet = u;
+                        }
+                    }
+                }
+            }
+        }
+
+        forward.settled += backward.settled;
+        return meet;
+    }
+
+    /**
+     * Returns a lower bound on the length of any path from v to t: the
+     * straight-line distance, or the landmark bound if that is larger. Every
+     * edge is at least as long as the straight line between its ends. The
+     * straight line is measured with the cheap equirectangular kernel, shrunk
+     * by its error bound so it never overestimates.
+     * @param v the vertex to estimate from
+     * @param t the target vertex
+     * @param table the landmarks to bound with, or null for straight-line only
+     * @return a lower bound on the distance from v to t
+     */
+    double heuristic(int v, int t, LandmarkTable table) {
+        CSRGraph g = this.graph;
+        double bound = Distances.lowerBound(g.latRadians[v], g.lonRadians[v], g.cosLat[v], g.latRadians[t], g.lonRadians[t], g.cosLat[t]);
+        if (table != null) {
+            bound = Math.max(bound, table.lowerBound(v, t));
+        }
+        return bound;
+    }
+
+    /**
+     * Follows the parents recorded in ws back from t to the source of the search.
+     * @param ws the workspace of a finished search
+     * @param t the target vertex
+     * @return the path from the source to t
+     */
+    IDeque<Location> path(SearchWorkspace ws, int t) {
+        LinkedDeque<Location> path = new LinkedDeque<>();
+        for (int curr = t; curr != -1; curr = ws.parent[curr]) {
+            path.addFront(this.graph.location(curr));
+        }
+        return path;
+    }
+}
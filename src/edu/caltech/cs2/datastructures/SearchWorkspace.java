@@ -0,0 +1,117 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * Scratch state for one shortest path search over a CSRGraph.
+ *
+ * A workspace is reused across queries. Instead of clearing dist and parent
+ * before every search, each search gets a new epoch, and an entry is only
+ * valid when its visitedEpoch matches the current epoch, so a reset costs O(1).
+ * The worklist is an IntDoubleIndexedHeap, or an IntRadixHeap for searches
+ * that pop keys in increasing order. Either way each vertex is in it at most
+ * once and pushing a vertex that is already there lowers its key in place.
+ */
+class SearchWorkspace {
+    private static final int HEAP_ARITY = 4;
+
+    final double[] dist;
+    final int[] parent;
+    final int[] visitedEpoch;
+    private int epoch;
+    int settled;
+
+    private final IntDoubleIndexedHeap queue;
+    private final IntRadixHeap radixQueue;
+
+    SearchWorkspace(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Creates a workspace for a graph with size vertices.
+     * @param size the number of vertices
+     * @param radix whether the worklist is a radix heap, which needs keys
+     *              to be non-negative and is fastest when they are popped in
+     *              increasing order
+     */
+    SearchWorkspace(int size, boolean radix) {
+        this.dist = new double[size];
+        this.parent = new int[size];
+        this.visitedEpoch = new int[size];
+        this.epoch = 0;
+        this.queue = radix ? null : new IntDoubleIndexedHeap(size, HEAP_ARITY);
+        this.radixQueue = radix ? new IntRadixHeap(size) : null;
+    }
+
+    /**
+     * Forgets all distances, parents and worklist entries from the previous search.
+     */
+    void reset() {
+        this.epoch++;
+        if (this.epoch == Integer.MAX_VALUE) {
+            for (int i = 0; i < this.visitedEpoch.length; i++) {
+                this.visitedEpoch[i] = 0;
+            }
+            this.epoch = 1;
+        }
+        if (this.radixQueue != null) {
+            this.radixQueue.clear();
+        } else {
+            this.queue.clear();
+        }
+        this.settled = 0;
+    }
+
+    /**
+     * Returns whether v has been given a distance in the current search.
+     * @param v the vertex to check
+     * @return true if v has been reached and false otherwise
+     */
+    boolean reached(int v) {
+        return this.visitedEpoch[v] == this.epoch;
+    }
+
+    /**
+     * Returns the best known distance to v in the current search.
+     * @param v the vertex to check
+     * @return the distance to v, or infinity if v has not been reached
+     */
+    double distance(int v) {
+        return this.reached(v) ? this.dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Records a new best distance to v through parent p.
+     * @param v the vertex reached
+     * @param d the distance to v
+     * @param p the vertex preceding v, or -1 if v is a source
+     */
+    void reach(int v, double d, int p) {
+        this.visitedEpoch[v] = this.epoch;
+        this.dist[v] = d;
+        this.parent[v] = p;
+    }
+
+    boolean isHeapEmpty() {
+        return this.radixQueue != null ? this.radixQueue.isEmpty() : this.queue.isEmpty();
+    }
+
+    double peekKey() {
+        return this.radixQueue != null ? this.radixQueue.peekPriority() : this.queue.peekPriority();
+    }
+
+    /**
+     * Adds v to the worklist with the given key, or lowers its key if it is
+     * already there with a larger one.
+     */
+    void push(int v, double key) {
+        if (this.radixQueue != null) {
+            this.radixQueue.insertOrDecrease(v, key);
+        } else {
+            this.queue.insertOrDecrease(v, key);
+        }
+    }
+
+    int pop() {
+        return this.radixQueue != null ? this.radixQueue.pop() : this.queue.pop();
+    }
+}
@@ -0,0 +1,307 @@
+package edu.caltech.cs2.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A static R-tree over the road segments of a CSRGraph, for snapping a point
+ * on the map to the closest road.
+ *
+ * A segment is an edge between two vertices that are not buildings, counted
+ * once for both directions. Coordinates are projected to feet on a plane
+ * tangent at the map's mean latitude, which is accurate to well under a foot
+ * across a city.
+ *
+ * The tree is packed bottom-up with Sort-Tile-Recursive: the boxes of one
+ * level are sorted into vertical slices by x, each slice is sorted by y, and
+ * runs of NODE_CAPACITY boxes become the children of one box on the next
+ * level. Segments and nodes share one set of flat box arrays; a node lists
+ * its children as a range of childIds.
+ */
+public class SegmentRTree {
+    private static final int NODE_CAPACITY = 16;
+    private static final double FT_PER_DEGREE = Location.EARTH_RAD_FT * Math.PI / 180;
+
+    private final CSRGraph graph;
+    private final double lonScale;
+    private final int segmentCount;
+    private final int[] segmentFrom;
+    private final int[] segmentTo;
+
+    // boxes [0, segmentCount) are segments, the rest are nodes
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] childIds;
+    private final int root;
+
+    /**
+     * Builds a tree over the road segments of graph.
+     * @param graph the snapshot to index
+     */
+    public SegmentRTree(CSRGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        double latSum = 0;
+        for (int v = 0; v < n; v++) {
+            latSum += graph.lat[v];
+        }
+        this.lonScale = n == 0 ? 1 : Math.cos(Math.toRadians(latSum / n));
+
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                if (this.isSegment(v, graph.targets[e], e)) {
+                    count++;
+                }
+            }
+        }
+        this.segmentCount = count;
+        this.segmentFrom = new int[count];
+        this.segmentTo = new int[count];
+        count = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                if (this.isSegment(v, graph.targets[e], e)) {
+                    this.segmentFrom[count] = v;
+                    this.segmentTo[count] = graph.targets[e];
+                    count++;
+                }
+            }
+        }
+
+        // a packed tree has fewer than segmentCount / (NODE_CAPACITY - 1) + levels nodes
+        int maxBoxes = this.segmentCount + this.segmentCount / (NODE_CAPACITY - 1) + 64;
+        this.minX = new double[maxBoxes];
+        this.minY = new double[maxBoxes];
+        this.maxX = new double[maxBoxes];
+        this.maxY = new double[maxBoxes];
+        this.firstChild = new int[maxBoxes];
+        this.childCount = new int[maxBoxes];
+        this.childIds = new int[maxBoxes];
+        for (int i = 0; i < this.segmentCount; i++) {
+            double x1 = this.x(this.segmentFrom[i]);
+            double y1 = this.y(this.segmentFrom[i]);
+            double x2 = this.x(this.segmentTo[i]);
+            double y2 = this.y(this.segmentTo[i]);
+            this.minX[i] = Math.min(x1, x2);
+            this.minY[i] = Math.min(y1, y2);
+            this.maxX[i] = Math.max(x1, x2);
+            this.maxY[i] = Math.max(y1, y2);
+        }
+        this.root = this.pack();
+    }
+
+    /**
+     * Returns whether edge e from v to u is the copy of its road segment that
+     * gets indexed: neither end is a building, and of the two directions of a
+     * two-way road only the one from the smaller vertex counts.
+     */
+    private boolean isSegment(int v, int u, int e) {
+        CSRGraph g = this.graph;
+        if (v == u || g.building[v] || g.building[u]) {
+            return false;
+        }
+        if (v < u) {
+            return true;
+        }
+        for (int r = g.offsets[u]; r < g.offsets[u + 1]; r++) {
+            if (g.targets[r] == v) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double x(int v) {
+        return this.graph.lon[v] * this.lonScale * FT_PER_DEGREE;
+    }
+
+    private double y(int v) {
+        return this.graph.lat[v] * FT_PER_DEGREE;
+    }
+
+    /**
+     * Packs the segments into nodes level by level.
+     * @return the box id of the root, or -1 if there are no segments
+     */
+    private int pack() {
+        if (this.segmentCount == 0) {
+            return -1;
+        }
+        int[] level = new int[this.segmentCount];
+        for (int i = 0; i < this.segmentCount; i++) {
+            level[i] = i;
+        }
+        long[] keys = new long[this.segmentCount];
+        int boxes = this.segmentCount;
+        int children = 0;
+        boolean leaves = true;
+        while (leaves || level.length > 1) {
+            int parents = (level.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int slices = (int) Math.ceil(Math.sqrt(parents));
+            int sliceSize = slices * NODE_CAPACITY;
+            this.sortByCenter(level, 0, level.length, this.minX, this.maxX, keys);
+            for (int start = 0; start < level.length; start += sliceSize) {
+                this.sortByCenter(level, start, Math.min(start + sliceSize, level.length), this.minY, this.maxY, keys);
+            }
+
+            int[] next = new int[parents];
+            int p = 0;
+            for (int sliceStart = 0; sliceStart < level.length; sliceStart += sliceSize) {
+                int sliceEnd = Math.min(sliceStart + sliceSize, level.length);
+                for (int start = sliceStart; start < sliceEnd; start += NODE_CAPACITY) {
+                    int end = Math.min(start + NODE_CAPACITY, sliceEnd);
+                    int node = boxes;
+                    boxes++;
+                    this.firstChild[node] = children;
+                    this.childCount[node] = end - start;
+                    this.minX[node] = Double.POSITIVE_INFINITY;
+                    this.minY[node] = Double.POSITIVE_INFINITY;
+                    this.maxX[node] = Double.NEGATIVE_INFINITY;
+                    this.maxY[node] = Double.NEGATIVE_INFINITY;
+                    for (int i = start; i < end; i++) {
+                        int child = level[i];
+                        this.childIds[children] = child;
+                        children++;
+                        this.minX[node] = Math.min(this.minX[node], this.minX[child]);
+                        this.minY[node] = Math.min(this.minY[node], this.minY[child]);
+                        this.maxX[node] = Math.max(this.maxX[node], this.maxX[child]);
+                        this.maxY[node] = Math.max(this.maxY[node], this.maxY[child]);
+                    }
+                    next[p] = node;
+                    p++;
+                }
+            }
+            level = Arrays.copyOf(next, p);
+            leaves = false;
+        }
+        return level[0];
+    }
+
+    /**
+     * Sorts boxes[from, to) by the center of each box on one axis, given by
+     * its min and max arrays. The centers are scaled to 31-bit integers over
+     * their range and packed above the box ids, so sorting the keys as longs
+     * sorts the boxes.
+     */
+    private void sortByCenter(int[] boxes, int from, int to, double[] min, double[] max, long[] keys) {
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double center = min[boxes[i]] + max[boxes[i]];
+            lo = Math.min(lo, center);
+            hi = Math.max(hi, center);
+        }
+        double scale = hi > lo ? Integer.MAX_VALUE / (hi - lo) : 0;
+        for (int i = from; i < to; i++) {
+            long center = (long) ((min[boxes[i]] + max[boxes[i]] - lo) * scale);
+            keys[i - from] = (center << 32) | boxes[i];
+        }
+        Arrays.sort(keys, 0, to - from);
+        for (int i = from; i < to; i++) {
+            boxes[i] = (int) keys[i - from];
+        }
+    }
+
+    /**
+     * Returns the number of indexed road segments.
+     * @return the number of segments
+     */
+    public int size() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Returns the point on a road segment closest to (lat, lon).
+     * @param lat the latitude of the query point
+     * @param lon the longitude of the query point
+     * @return the closest point on a road, or null if there are no roads
+     */
+    public RoadSnap nearest(double lat, double lon) {
+        if (this.root < 0) {
+            return null;
+        }
+        double qx = lon * this.lonScale * FT_PER_DEGREE;
+        double qy = lat * FT_PER_DEGREE;
+        int best = this.nearest(this.root, qx, qy, -1, Double.POSITIVE_INFINITY);
+
+        int from = this.segmentFrom[best];
+        int to = this.segmentTo[best];
+        double fraction = this.fraction(best, qx, qy);
+        double snapLat = this.graph.lat[from] + fraction * (this.graph.lat[to] - this.graph.lat[from]);
+        double snapLon = this.graph.lon[from] + fraction * (this.graph.lon[to] - this.graph.lon[from]);
+        return new RoadSnap(this.graph.location(from), this.graph.location(to), fraction, snapLat, snapLon,
+                Math.sqrt(this.segmentDistance2(best, qx, qy)));
+    }
+
+    /**
+     * Searches the subtree of box for a segment closer to the query than
+     * best, which is at squared distance bestDist2. The child whose box is
+     * closest is searched first; the others only if their boxes are closer
+     * than the best segment found.
+     * @return the closest segment found, or best if none is closer
+     */
+    private int nearest(int box, double qx, double qy, int best, double bestDist2) {
+        if (box < this.segmentCount) {
+            return this.segmentDistance2(box, qx, qy) < bestDist2 ? box : best;
+        }
+
+        int first = this.firstChild[box];
+        int end = first + this.childCount[box];
+        int closest = first;
+        for (int i = first + 1; i < end; i++) {
+            if (this.boxDistance2(this.childIds[i], qx, qy) < this.boxDistance2(this.childIds[closest], qx, qy)) {
+                closest = i;
+            }
+        }
+        for (int k = -1; k < end - first; k++) {
+            int i = k < 0 ? closest : first + k;
+            if (k >= 0 && i == closest) {
+                continue;
+            }
+            int child = this.childIds[i];
+            if (this.boxDistance2(child, qx, qy) < bestDist2) {
+                int found = this.nearest(child, qx, qy, best, bestDist2);
+                if (found != best) {
+                    best = found;
+                    bestDist2 = this.segmentDistance2(best, qx, qy);
+                }
+            }
+        }
+        return best;
+    }
+
+    private double boxDistance2(int box, double qx, double qy) {
+        double dx = Math.max(0, Math.max(this.minX[box] - qx, qx - this.maxX[box]));
+        double dy = Math.max(0, Math.max(this.minY[box] - qy, qy - this.maxY[box]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns how far along segment s the projection of the query lies,
+     * clamped to the segment.
+     */
+    private double fraction(int s, double qx, double qy) {
+        double x1 = this.x(this.segmentFrom[s]);
+        double y1 = this.y(this.segmentFrom[s]);
+        double dx = this.x(this.segmentTo[s]) - x1;
+        double dy = this.y(this.segmentTo[s]) - y1;
+        double length2 = dx * dx + dy * dy;
+        if (length2 == 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, ((qx - x1) * dx + (qy - y1) * dy) / length2));
+    }
+
+    private double segmentDistance2(int s, double qx, double qy) {
+        double t = this.fraction(s, qx, qy);
+        double x1 = this.x(this.segmentFrom[s]);
+        double y1 = this.y(this.segmentFrom[s]);
+        double px = x1 + t * (this.x(this.segmentTo[s]) - x1) - qx;
+        double py = y1 + t * (this.y(this.segmentTo[s]) - y1) - qy;
+        return px * px + py * py;
+    }
+}
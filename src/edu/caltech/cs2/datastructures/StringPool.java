@@ -0,0 +1,217 @@
+package edu.caltech.cs2.datastructures;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A deduplicated pool of strings stored as UTF-8 bytes in one buffer.
+ *
+ * Each distinct string is stored once, as its byte length in a varint
+ * followed by its bytes, and is referred to by the offset where it starts.
+ * The buffer can live off the Java heap, in which case the garbage collector
+ * never has to scan or copy it. An open-addressing table of offsets finds an
+ * existing copy of a string when it is added again.
+ */
+public class StringPool {
+    /** The reference that stands for a null string. */
+    public static final int NULL = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_TABLE_SIZE = 64;
+
+    private final boolean offHeap;
+    private ByteBuffer bytes;
+    private int end;
+    private int[] table;
+    private int[] hashes;
+    private int count;
+
+    public StringPool() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty pool.
+     * @param offHeap whether to keep the bytes in a direct buffer outside the Java heap
+     */
+    public StringPool(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.bytes = this.allocate(DEFAULT_CAPACITY);
+        this.end = 0;
+        this.table = new int[DEFAULT_TABLE_SIZE];
+        this.hashes = new int[DEFAULT_TABLE_SIZE];
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = NULL;
+        }
+        this.count = 0;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return this.offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int hash(byte[] utf8) {
+        int h = 0;
+        for (byte b : utf8) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Adds s to the pool if an equal string is not already in it.
+     * @param s the string to add, which may be null
+     * @return the reference to s, or NULL if s is null
+     */
+    public int intern(String s) {
+        if (s == null) {
+            return NULL;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int h = hash(utf8);
+        int mask = this.table.length - 1;
+        int i = h & mask;
+        while (this.table[i] != NULL) {
+            if (this.hashes[i] == h && this.matches(this.table[i], utf8)) {
+                return this.table[i];
+            }
+            i = (i + 1) & mask;
+        }
+
+        int ref = this.append(utf8);
+        this.table[i] = ref;
+        this.hashes[i] = h;
+        this.count++;
+        if (this.count * 2 > this.table.length) {
+            this.resizeTable();
+        }
+        return ref;
+    }
+
+    /**
+     * Returns the string a reference refers to.
+     * @param ref a reference returned by intern
+     * @return the string, or null if ref is NULL
+     */
+    public String get(int ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        int length = this.length(ref);
+        int i = this.start(ref);
+
+        byte[] utf8 = new byte[length];
+        for (int j = 0; j < length; j++) {
+            utf8[j] = this.bytes.get(i + j);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of distinct strings in the pool.
+     * @return the number of distinct strings
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of bytes the strings take up.
+     * @return the number of bytes used in the buffer
+     */
+    public int byteSize() {
+        return this.end;
+    }
+
+    /**
+     * Returns the byte length of the string at ref.
+     */
+    private int length(int ref) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = this.bytes.get(ref);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+            ref++;
+        } while (b < 0);
+        return length;
+    }
+
+    /**
+     * Returns where the bytes of the string at ref begin, just past its length.
+     */
+    private int start(int ref) {
+        while (this.bytes.get(ref) < 0) {
+            ref++;
+        }
+        return ref + 1;
+    }
+
+    private boolean matches(int ref, byte[] utf8) {
+        int length = this.length(ref);
+        int i = this.start(ref);
+
+        if (length != utf8.length) {
+            return false;
+        }
+        for (int j = 0; j < length; j++) {
+            if (this.bytes.get(i + j) != utf8[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(byte[] utf8) {
+        // at most five varint bytes for the length
+        if (this.end + 5 + utf8.length > this.bytes.capacity()) {
+            int capacity = this.bytes.capacity() * 2;
+            while (this.end + 5 + utf8.length > capacity) {
+                capacity *= 2;
+            }
+            ByteBuffer bigger = this.allocate(capacity);
+            for (int i = 0; i < this.end; i++) {
+                bigger.put(i, this.bytes.get(i));
+            }
+            this.bytes = bigger;
+        }
+
+        int ref = this.end;
+        int length = utf8.length;
+        while (length >= 0x80) {
+            this.bytes.put(this.end, (byte) (length | 0x80));
+            length >>>= 7;
+            this.end++;
+        }
+        this.bytes.put(this.end, (byte) length);
+        this.end++;
+        for (byte b : utf8) {
+            this.bytes.put(this.end, b);
+            this.end++;
+        }
+        return ref;
+    }
+
+    private void resizeTable() {
+        int[] oldTable = this.table;
+        int[] oldHashes = this.hashes;
+        this.table = new int[oldTable.length * 2];
+        this.hashes = new int[oldTable.length * 2];
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = NULL;
+        }
+        int mask = this.table.length - 1;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != NULL) {
+                int j = oldHashes[i] & mask;
+                while (this.table[j] != NULL) {
+                    j = (j + 1) & mask;
+                }
+                this.table[j] = oldTable[i];
+                this.hashes[j] = oldHashes[i];
+            }
+        }
+    }
+}
@@ -97,6 +97,15 @@ public interface IDictionary<K, V> extends Iterable<K> {
      */
     public ICollection<V> values();
 
+    /**
+     * Tells this map that it will only be read from now on, so it may
+     * rebuild itself into a compact read-only form. Once frozen, a map may
+     * throw {@code UnsupportedOperationException} from {@code put} and
+     * {@code remove}. Maps without such a form ignore this call.
+     */
+    default public void freeze() {
+    }
+
     default public ICollection<Entry<K, V>> entrySet() {
         IDeque<Entry<K, V>> entries = new LinkedDeque<>();
         for (K key : keySet()) {
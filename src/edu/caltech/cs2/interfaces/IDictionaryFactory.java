@@ -0,0 +1,17 @@
+package edu.caltech.cs2.interfaces;
+
+/**
+ * This interface represents a way to create empty dictionaries, so that a data structure built on
+ * dictionaries can be told which IDictionary implementation to use. Any no-argument constructor of
+ * a dictionary class works as one, e.g. RobinHoodHashDictionary::new.
+ */
+@FunctionalInterface
+public interface IDictionaryFactory {
+    /**
+     * Creates a new, empty dictionary.
+     * @param <K> Key type
+     * @param <V> Value type
+     * @return An empty dictionary
+     */
+    public <K, V> IDictionary<K, V> create();
+}
@@ -15,6 +15,16 @@ public class ISet<E> implements Iterable<E> {
         return new ISet<E>(dict);
     }
 
+    /**
+     * Returns a new, empty set backed by a dictionary made by dictionaries.
+     *
+     * @param dictionaries the factory for the backing dictionary
+     * @return an empty set
+     */
+    public static <E> ISet<E> backedBy(IDictionaryFactory dictionaries) {
+        return new ISet<E>(dictionaries.create());
+    }
+
     /**
      * Returns the number of elements in this set (its cardinality).  If this
      * set contains more than {@code Integer.MAX_VALUE} elements, returns
@@ -111,6 +121,17 @@ public class ISet<E> implements Iterable<E> {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Freezes the backing dictionary, after which this set may throw
+     * {@code UnsupportedOperationException} from {@code add} and
+     * {@code remove}.
+     *
+     * @see IDictionary#freeze()
+     */
+    public void freeze() {
+        this.internalDictionary.freeze();
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -1,14 +1,20 @@
 package edu.caltech.cs2.project07;
 
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.ConvexHull;
+import edu.caltech.cs2.datastructures.LandmarkTable;
 import edu.caltech.cs2.datastructures.LinkedDeque;
 import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.RoadSnap;
+import edu.caltech.cs2.datastructures.RoutingEngine;
 import edu.caltech.cs2.interfaces.IDeque;
-import edu.caltech.cs2.interfaces.ISet;
 
 import java.awt.*;
 import java.io.IOException;
@@ -24,6 +30,8 @@ import java.util.stream.Stream;
 public class BeaverMaps {
     public static final int PORT = 8001;
     public static final int NUMBER_OF_OPTIONS = 15;
+    public static final double FIVE_MINUTE_WALK_FT = 1320;
+    public static final int MAX_RESULTS = 500;
     private static BeaverMapsGraph graph;
     private static MapsAutoCompleter COMPLETER;
 
@@ -47,8 +55,19 @@ public class BeaverMaps {
     public static void main(String[] args) throws Exception {
         long start = System.currentTimeMillis();
         graph = new BeaverMapsGraph("data/pasadena.buildings", "data/pasadena.waypoints", "data/pasadena.roads");
+        graph.freeze();
+        graph.freezeDictionaries();
         long end = System.currentTimeMillis();
         System.out.println("Reading data took " + (end - start) + " millis.");
+        start = System.currentTimeMillis();
+        graph.router().hierarchy();
+        end = System.currentTimeMillis();
+        System.out.println("Contracting the road graph took " + (end - start) + " millis.");
+        start = System.currentTimeMillis();
+        graph.router().hubLabels();
+        end = System.currentTimeMillis();
+        System.out.println("Building hub labels took " + (end - start) + " millis.");
+        loadLandmarks("data/pasadena.landmarks");
         System.out.println("Populating autocomplete");
         COMPLETER.populateLocations(graph.getBuildings());
         System.out.println("Done populating autocomplete");
@@ -64,6 +83,12 @@ public class BeaverMaps {
         server.createContext("/pathfinder", new PathFinder());
         server.createContext("/autocomplete", new Autocomplete());
         server.createContext("/nearest", new NearestSearch());
+        server.createContext("/distance", new DistanceSearch());
+        server.createContext("/matrix", new DistanceMatrix());
+        server.createContext("/isochrone", new IsochroneSearch());
+        server.createContext("/knearest", new KNearestSearch());
+        server.createContext("/bbox", new BoxSearch());
+        server.createContext("/snap", new SnapSearch());
         server.setExecutor(null); // creates a default executor
         server.start();
         System.out.println("Server started!");
@@ -73,6 +98,34 @@ public class BeaverMaps {
         }
     }
 
+    /**
+     * Reads the ALT landmark table from filename, or computes it and writes
+     * it there if the file is missing or was made for a different map.
+     * @param filename the landmark cache file
+     */
+    private static void loadLandmarks(String filename) {
+        LandmarkTable table = null;
+        try {
+            table = LandmarkTable.load(filename, graph.freeze());
+        } catch (IOException e) {
+            table = null;
+        }
+
+        if (table == null) {
+            long start = System.currentTimeMillis();
+            table = graph.useLandmarks(16, LandmarkTable.Selection.FARTHEST);
+            long end = System.currentTimeMillis();
+            System.out.println("Computing landmarks took " + (end - start) + " millis.");
+            try {
+                table.save(filename);
+            } catch (IOException e) {
+                System.out.println("Could not save landmarks to " + filename);
+            }
+        } else {
+            graph.router().setLandmarks(table);
+        }
+    }
+
     static class PathFinder implements HttpHandler {
         @Override
         public void handle(HttpExchange t) throws IOException {
@@ -80,9 +133,25 @@ public class BeaverMaps {
             Optional<String> start_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-id=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> end = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> end_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end-id=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> algorithm = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("algorithm=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> start_lat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-lat=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> start_lon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-lon=")).map(x -> x.split("=")[1]).findAny();
             String response = "[]";
 
-            if (start.isPresent() && end.isPresent()) {
+            if (start_lat.isPresent() && start_lon.isPresent() && end.isPresent()) {
+                String endID = end_id.orElse(null);
+                Location endLocation = endID != null ?
+                        graph.getLocationByID(Long.parseLong(endID)) :
+                        graph.getLocationByName(end.get()).peek();
+
+                IDeque<Location> locs = null;
+                if (endLocation != null) {
+                    locs = graph.routeFromPoint(Double.parseDouble(start_lat.get()), Double.parseDouble(start_lon.get()), endLocation);
+                }
+                if (locs != null) {
+                    response = pathToString(locs);
+                }
+            } else if (start.isPresent() && end.isPresent()) {
                 String startL = start.get();
                 String endL = end.get();
                 String startID = start_id.orElse(null);
@@ -94,26 +163,141 @@ public class BeaverMaps {
                         graph.getLocationByID(Long.parseLong(endID)) :
                         graph.getLocationByName(endL).peek();
 
+                IDeque<Location> locs = null;
                 if (startLocation != null && endLocation != null) {
-                    IDeque<Location> locs = graph.dijkstra(startLocation, endLocation);
-                    IDeque<String> path = new LinkedDeque<>();
+                    locs = graph.route(startLocation, endLocation, RoutingEngine.Algorithm.parse(algorithm.orElse(null)));
+                }
 
-                    int i = 0;
-                    for (Location loc : locs) {
-                        String locStr = loc.lat + "::" + loc.lon + "::" + ("" + i + ":" + (loc.name != null ? " " + loc.name : "") + "::" + loc.id);
-                        path.add(locStr);
-                        i++;
+                if (locs != null) {
+                    response = pathToString(locs);
+                }
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+        }
+
+        private static String pathToString(IDeque<Location> locs) {
+            IDeque<String> path = new LinkedDeque<>();
+
+            int i = 0;
+            for (Location loc : locs) {
+                String locStr = loc.lat + "::" + loc.lon + "::" + ("" + i + ":" + (loc.name != null ? " " + loc.name : "") + "::" + loc.id);
+                path.add(locStr);
+                i++;
+            }
+
+            return path.toString();
+        }
+    }
+
+    static class SnapSearch implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> lat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lat=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> lon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lon=")).map(x -> x.split("=")[1]).findAny();
+            String response = "";
+
+            if (lat.isPresent() && lon.isPresent()) {
+                RoadSnap snap = graph.snapToRoad(Double.parseDouble(lat.get()), Double.parseDouble(lon.get()));
+
+                if (snap != null) {
+                    JsonObject result = new JsonObject();
+                    result.addProperty("from", snap.from.id);
+                    result.addProperty("to", snap.to.id);
+                    result.addProperty("fraction", snap.fraction);
+                    result.addProperty("lat", snap.lat);
+                    result.addProperty("lon", snap.lon);
+                    result.addProperty("distance", snap.distance);
+                    response = result.toString();
+                }
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.close();
+        }
+    }
+
+    static class DistanceSearch implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> start_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-id=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> end_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end-id=")).map(x -> x.split("=")[1]).findAny();
+            String response = "";
+
+            if (start_id.isPresent() && end_id.isPresent()) {
+                Location startLocation = graph.getLocationByID(Long.parseLong(start_id.get()));
+                Location endLocation = graph.getLocationByID(Long.parseLong(end_id.get()));
+
+                if (startLocation != null && endLocation != null) {
+                    double dist = graph.distance(startLocation, endLocation);
+                    JsonObject result = new JsonObject();
+                    if (dist == Double.POSITIVE_INFINITY) {
+                        result.add("distance", JsonNull.INSTANCE);
+                    } else {
+                        result.addProperty("distance", dist);
                     }
+                    response = result.toString();
+                }
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.close();
+        }
+    }
+
+    static class DistanceMatrix implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> sources = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("sources=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> targets = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("targets=")).map(x -> x.split("=")[1]).findAny();
+            String response = "";
 
-                    response = path.toString();
+            if (sources.isPresent() && targets.isPresent()) {
+                Location[] sourceLocs = locationsByID(sources.get());
+                Location[] targetLocs = locationsByID(targets.get());
+                double[][] matrix = graph.distanceMatrix(sourceLocs, targetLocs);
+
+                JsonArray rows = new JsonArray();
+                for (double[] distances : matrix) {
+                    JsonArray row = new JsonArray();
+                    for (double dist : distances) {
+                        if (dist == Double.POSITIVE_INFINITY) {
+                            row.add(JsonNull.INSTANCE);
+                        } else {
+                            row.add(dist);
+                        }
+                    }
+                    rows.add(row);
                 }
+                JsonObject result = new JsonObject();
+                result.add("distances", rows);
+                response = result.toString();
             }
 
             t.sendResponseHeaders(200, 0);
             OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
+            os.write(response.getBytes(StandardCharsets.UTF_8));
             os.close();
         }
+
+        /**
+         * Looks up each id in a comma-separated list; unknown ids map to null.
+         */
+        private static Location[] locationsByID(String ids) {
+            String[] parts = ids.split(",");
+            Location[] locs = new Location[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                locs[i] = graph.getLocationByID(Long.parseLong(parts[i].trim()));
+            }
+            return locs;
+        }
     }
 
     static class NearestSearch implements HttpHandler {
@@ -140,6 +324,81 @@ public class BeaverMaps {
         }
     }
 
+    static class KNearestSearch implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> lat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lat=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> lon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lon=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> k = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("k=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> filter = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("filter=")).map(x -> x.split("=")[1]).findAny();
+            String response = "[]";
+
+            if (lat.isPresent() && lon.isPresent()) {
+                int count = Math.min(Integer.parseInt(k.orElse("10")), MAX_RESULTS);
+                IDeque<Location> locs = graph.kNearest(Double.parseDouble(lat.get()), Double.parseDouble(lon.get()), count, filter.orElse(null));
+                response = buildingsToJson(locs).toString();
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.close();
+        }
+    }
+
+    static class BoxSearch implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> minLat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("minlat=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> minLon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("minlon=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> maxLat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("maxlat=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> maxLon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("maxlon=")).map(x -> x.split("=")[1]).findAny();
+            String response = "[]";
+
+            if (minLat.isPresent() && minLon.isPresent() && maxLat.isPresent() && maxLon.isPresent()) {
+                IDeque<Location> locs = graph.inBox(Double.parseDouble(minLat.get()), Double.parseDouble(minLon.get()),
+                        Double.parseDouble(maxLat.get()), Double.parseDouble(maxLon.get()), MAX_RESULTS);
+                response = buildingsToJson(locs).toString();
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.close();
+        }
+    }
+
+    /**
+     * Returns a JSON array of at most MAX_RESULTS buildings from locs. Each
+     * building has its id, lat, lon and name, which is null if it has none.
+     * @param locs the buildings to write
+     * @return the JSON array
+     */
+    private static JsonArray buildingsToJson(IDeque<Location> locs) {
+        JsonArray result = new JsonArray();
+        for (Location loc : locs) {
+            if (result.size() == MAX_RESULTS) {
+                break;
+            }
+            result.add(buildingToJson(loc));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a JSON object with the id, lat, lon and name of loc.
+     * @param loc the building to write
+     * @return the JSON object
+     */
+    private static JsonObject buildingToJson(Location loc) {
+        JsonObject building = new JsonObject();
+        building.addProperty("id", loc.id);
+        building.addProperty("name", loc.name);
+        building.addProperty("lat", loc.lat);
+        building.addProperty("lon", loc.lon);
+        return building;
+    }
+
     static class AllWithNameSearch implements HttpHandler {
         @Override
         public void handle(HttpExchange t) throws IOException {
@@ -189,11 +448,10 @@ public class BeaverMaps {
                 if (l != null) {
                     IDeque<String> locList = new LinkedDeque<>();
                     double dist = Double.parseDouble(distance.orElse("200"));
-                    ISet<Location> closeLocs = graph.dfs(l, dist * 2);
-                    closeLocs.remove(l);
+                    IDeque<Location> closeLocs = graph.nearbyBuildings(l.lat, l.lon, dist);
 
                     for (Location loc : closeLocs) {
-                        if (l.getDistance(loc) < dist && loc.type == Location.Type.BUILDING) {
+                        if (!loc.equals(l)) {
                             String locStr = loc.lat + "::" + loc.lon + "::" + loc.name + "::" + loc.id;
                             locList.add(locStr);
                         }
@@ -212,6 +470,55 @@ public class BeaverMaps {
         }
     }
 
+    static class IsochroneSearch implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> name = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("name=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("id=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> budget = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("budget=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> hull = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("hull=")).map(x -> x.split("=")[1]).findAny();
+            String response = "";
+
+            if (name.isPresent() || id.isPresent()) {
+                Location l = id.isPresent() ?
+                        graph.getLocationByID(Long.parseLong(id.get())) :
+                        graph.getLocationByName(name.get()).peek();
+
+                if (l != null) {
+                    double maxDist = budget.isPresent() ? Double.parseDouble(budget.get()) : FIVE_MINUTE_WALK_FT;
+                    IDeque<Location> reached = graph.isochrone(l, maxDist);
+
+                    // every reachable building is written; the budget already bounds them
+                    JsonArray buildings = new JsonArray();
+                    for (Location loc : reached) {
+                        if (loc.type == Location.Type.BUILDING && !loc.equals(l)) {
+                            buildings.add(buildingToJson(loc));
+                        }
+                    }
+                    JsonObject result = new JsonObject();
+                    result.add("buildings", buildings);
+
+                    if (hull.isPresent() && hull.get().equals("true")) {
+                        JsonArray corners = new JsonArray();
+                        for (Location corner : ConvexHull.of(reached)) {
+                            JsonArray point = new JsonArray();
+                            point.add(corner.lat);
+                            point.add(corner.lon);
+                            corners.add(point);
+                        }
+                        result.add("hull", corners);
+                    }
+                    response = result.toString();
+                }
+            }
+
+            t.sendResponseHeaders(200, 0);
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.close();
+        }
+    }
+
     static class Autocomplete implements HttpHandler {
         @Override
         public void handle(HttpExchange t) throws IOException {
@@ -221,7 +528,7 @@ public class BeaverMaps {
                 long before = System.currentTimeMillis();
                 IDeque<Long> options = COMPLETER.complete(query.get());
                 String[] opts = new String[options.size()];
-                Long[] ids = new Long[options.size()];
+                long[] ids = new long[options.size()];
 
                 for (int i = 0; i < opts.length; i++) {
                     long id = options.removeFront();
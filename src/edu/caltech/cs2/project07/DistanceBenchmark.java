@@ -0,0 +1,116 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BatchDistances;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CSRGraph;
+import edu.caltech.cs2.datastructures.Location;
+
+import java.util.Random;
+
+/**
+ * Times distances from random points to every location on a map, once with
+ * Location.getDistance on each Location and once with BatchDistances over
+ * columns of coordinates, and the same for a brute force nearest location.
+ *
+ * Takes an optional map name (default pasadena) and query count.
+ */
+public class DistanceBenchmark {
+    private static final int WARMUP_QUERIES = 50;
+
+    public static void main(String[] args) {
+        String map = args.length > 0 ? args[0] : "pasadena";
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        BeaverMapsGraph graph = new BeaverMapsGraph("data/" + map + ".buildings", "data/" + map + ".waypoints", "data/" + map + ".roads");
+        CSRGraph snapshot = graph.freeze();
+        int n = snapshot.size();
+        if (n == 0) {
+            System.out.println("No locations in data/" + map);
+            return;
+        }
+
+        Location[] locations = new Location[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        double[] cosLats = new double[n];
+        for (int v = 0; v < n; v++) {
+            locations[v] = snapshot.location(v);
+            lats[v] = locations[v].latRadians;
+            lons[v] = locations[v].lonRadians;
+            cosLats[v] = locations[v].cosLat;
+        }
+
+        Random random = new Random(0);
+        Location[] points = new Location[WARMUP_QUERIES + queries];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = locations[random.nextInt(n)];
+        }
+
+        double[] out = new double[n];
+        double checksum = 0;
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            checksum += scalarDistances(points[i], locations, out);
+            checksum += batchDistances(points[i], lats, lons, cosLats, out);
+            checksum += scalarNearest(points[i], locations);
+            checksum += BatchDistances.nearest(points[i].latRadians, points[i].lonRadians, points[i].cosLat, lats, lons, cosLats, 0, n);
+        }
+
+        long start = System.nanoTime();
+        for (int i = WARMUP_QUERIES; i < points.length; i++) {
+            checksum += scalarDistances(points[i], locations, out);
+        }
+        report("Location.getDistance, one to all", start, queries, n);
+
+        start = System.nanoTime();
+        for (int i = WARMUP_QUERIES; i < points.length; i++) {
+            checksum += batchDistances(points[i], lats, lons, cosLats, out);
+        }
+        report("BatchDistances.distances, one to all", start, queries, n);
+
+        start = System.nanoTime();
+        for (int i = WARMUP_QUERIES; i < points.length; i++) {
+            checksum += scalarNearest(points[i], locations);
+        }
+        report("Location.getDistance, nearest", start, queries, n);
+
+        start = System.nanoTime();
+        for (int i = WARMUP_QUERIES; i < points.length; i++) {
+            checksum += BatchDistances.nearest(points[i].latRadians, points[i].lonRadians, points[i].cosLat, lats, lons, cosLats, 0, n);
+        }
+        report("BatchDistances.nearest, nearest", start, queries, n);
+
+        // keeps the JIT from dropping the loops
+        System.out.println("checksum " + checksum);
+    }
+
+    private static double scalarDistances(Location point, Location[] locations, double[] out) {
+        for (int v = 0; v < locations.length; v++) {
+            out[v] = point.getDistance(locations[v]);
+        }
+        return out[locations.length - 1];
+    }
+
+    private static double batchDistances(Location point, double[] lats, double[] lons, double[] cosLats, double[] out) {
+        BatchDistances.distances(point.latRadians, point.lonRadians, point.cosLat, lats, lons, cosLats, 0, lats.length, out);
+        return out[lats.length - 1];
+    }
+
+    private static int scalarNearest(Location point, Location[] locations) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int v = 0; v < locations.length; v++) {
+            double distance = point.getDistance(locations[v]);
+            if (distance < bestDistance) {
+                best = v;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static void report(String name, long start, int queries, int n) {
+        long end = System.nanoTime();
+        System.out.println(name + ": " + (end - start) / 1000 / queries + " micros per query, "
+                + (long) n * queries * 1000 / Math.max(1, end - start) + " distances per micro");
+    }
+}
@@ -12,9 +12,7 @@ import javax.xml.stream.events.XMLEvent;
 import java.io.File;
 import java.io.FileReader;
 import java.io.PrintWriter;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 
 public class OSMToJSON {
 
@@ -25,8 +23,9 @@ public class OSMToJSON {
     public static final QName TAG_VAL = new QName("v");
     public static final QName ND_REF = new QName("ref");
 
-    private static Map<Long, Location> tempNodes;
-    private static Map<Long, Boolean> addedNodes;
+    private static LongObjectDictionary<Location> tempNodes;
+    // used as a set of node ids: every id maps to 1, so putLong returns 0 only the first time an id is added
+    private static LongIntDictionary addedNodes;
     private static PrintWriter outbuilds;
     private static PrintWriter outways;
     private static PrintWriter outroads;
@@ -70,8 +69,8 @@ public class OSMToJSON {
 
     public static void buildJSON(String xmlFile) {
         System.out.println("Starting...");
-        tempNodes = new HashMap<>();
-        addedNodes = new HashMap<>();
+        tempNodes = new LongObjectDictionary<>();
+        addedNodes = new LongIntDictionary();
         try {
             outbuilds = new PrintWriter(new File("out.buildings"));
             outbuilds.print("[");
@@ -107,7 +106,7 @@ public class OSMToJSON {
                         readTags(tagNames, tagValues, reader);
                         Location newNode = buildNode(Long.parseLong(id), lat, lon, tagNames, tagValues);
 
-                        tempNodes.put(newNode.id, newNode);
+                        tempNodes.putLong(newNode.id, newNode);
                         if (newNode.type == Location.Type.BUILDING) {
                             outbuilds.println(newNode);
                         }
@@ -228,7 +227,7 @@ public class OSMToJSON {
                 Location currNode = null;
                 currNode = tempNodes.get(id);
                 currNode.name = name;
-                if (addedNodes.put(id, true) == null && currNode.type != Location.Type.BUILDING) {
+                if (addedNodes.putLong(id, 1) == 0 && currNode.type != Location.Type.BUILDING) {
                     outways.println(currNode);
                 }
                 if (prevNode != null) {
@@ -0,0 +1,71 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CSRGraph;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.RoutingEngine;
+
+import java.util.Random;
+
+/**
+ * Times Dijkstra queries on the same random pairs of locations with the
+ * vertices of the snapshot in insertion order and in Hilbert order, and with
+ * each kind of worklist.
+ *
+ * Takes an optional map name (default pasadena) and query count, then
+ * optionally an order (INSERTION or HILBERT) and a queue (HEAP or RADIX) to
+ * time only those. To see the change in cache misses, run it under a
+ * profiler, e.g.
+ * perf stat -e cache-references,cache-misses java ... RoutingBenchmark pasadena 2000 HILBERT
+ * once per order.
+ */
+public class RoutingBenchmark {
+    private static final int WARMUP_QUERIES = 200;
+
+    public static void main(String[] args) {
+        String map = args.length > 0 ? args[0] : "pasadena";
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        CSRGraph.Order[] orders = args.length > 2 ?
+                new CSRGraph.Order[]{CSRGraph.Order.valueOf(args[2])} :
+                CSRGraph.Order.values();
+        RoutingEngine.Queue[] queues = args.length > 3 ?
+                new RoutingEngine.Queue[]{RoutingEngine.Queue.valueOf(args[3])} :
+                RoutingEngine.Queue.values();
+
+        BeaverMapsGraph graph = new BeaverMapsGraph("data/" + map + ".buildings", "data/" + map + ".waypoints", "data/" + map + ".roads");
+        CSRGraph snapshot = graph.freeze();
+        if (snapshot.size() == 0) {
+            System.out.println("No locations in data/" + map);
+            return;
+        }
+
+        Random random = new Random(0);
+        Location[] starts = new Location[WARMUP_QUERIES + queries];
+        Location[] targets = new Location[WARMUP_QUERIES + queries];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = snapshot.location(random.nextInt(snapshot.size()));
+            targets[i] = snapshot.location(random.nextInt(snapshot.size()));
+        }
+
+        for (CSRGraph.Order order : orders) {
+            for (RoutingEngine.Queue queue : queues) {
+                graph.useVertexOrder(order);
+                graph.useQueue(queue);
+                RoutingEngine engine = graph.router();
+                for (int i = 0; i < WARMUP_QUERIES; i++) {
+                    engine.shortestPath(starts[i], targets[i]);
+                }
+
+                long settled = 0;
+                long start = System.nanoTime();
+                for (int i = WARMUP_QUERIES; i < starts.length; i++) {
+                    engine.shortestPath(starts[i], targets[i]);
+                    settled += engine.settledCount();
+                }
+                long end = System.nanoTime();
+                System.out.println(order + " " + queue + ": " + (end - start) / 1000 / queries + " micros per query, "
+                        + settled * 1000 / Math.max(1, end - start) + " vertices settled per micro");
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package edu.caltech.cs2.project07;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.caltech.cs2.datastructures.ConcurrentHashDictionary;
+import edu.caltech.cs2.datastructures.Graph;
+import edu.caltech.cs2.interfaces.IDictionary;
+import edu.caltech.cs2.interfaces.IGraph;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("C")
+public class ConcurrentDictionaryTests {
+    private static final int READERS = 8;
+    private static final int STABLE_KEYS = 20000;
+
+    /**
+     * Runs every task on its own thread, all started together, and waits for
+     * them to finish.
+     */
+    private static void runAll(List<Runnable> tasks) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (Runnable task : tasks) {
+            threads.add(new Thread(task));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    @DisplayName("Readers always see keys that are never removed, while a writer churns other keys")
+    @Test
+    public void stressReadersWithWriter() throws InterruptedException {
+        IDictionary<Integer, Integer> dict = new ConcurrentHashDictionary<>();
+        for (int k = 0; k < STABLE_KEYS; k++) {
+            dict.put(k, 2 * k);
+        }
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicInteger failures = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            int seed = r;
+            tasks.add(() -> {
+                Random rand = new Random(seed);
+                while (!done.get()) {
+                    int k = rand.nextInt(STABLE_KEYS);
+                    Integer v = dict.get(k);
+                    if (v == null || v != 2 * k || !dict.containsKey(k)) {
+                        failures.incrementAndGet();
+                    }
+                    // churned keys are either absent or hold their own value
+                    int c = STABLE_KEYS + rand.nextInt(4 * STABLE_KEYS);
+                    Integer w = dict.get(c);
+                    if (w != null && w != 2 * c) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        tasks.add(() -> {
+            // enough inserts to grow the table several times while readers run
+            for (int round = 0; round < 3; round++) {
+                for (int c = STABLE_KEYS; c < 5 * STABLE_KEYS; c++) {
+                    dict.put(c, 2 * c);
+                }
+                for (int c = STABLE_KEYS; c < 5 * STABLE_KEYS; c++) {
+                    dict.remove(c);
+                }
+            }
+            done.set(true);
+        });
+        runAll(tasks);
+
+        assertEquals(0, failures.get(), "Readers should never see a wrong value");
+        assertEquals(STABLE_KEYS, dict.size(), "Churned keys should all be removed");
+        for (int k = 0; k < STABLE_KEYS; k++) {
+            assertEquals(2 * k, dict.get(k), "Stable keys should keep their values");
+        }
+    }
+
+    @DisplayName("Writers on disjoint keys do not lose updates")
+    @Test
+    public void stressConcurrentWriters() throws InterruptedException {
+        IDictionary<Integer, Integer> dict = new ConcurrentHashDictionary<>();
+        int perWriter = 10000;
+        List<Runnable> tasks = new ArrayList<>();
+        for (int w = 0; w < READERS; w++) {
+            int base = w * perWriter;
+            tasks.add(() -> {
+                for (int k = base; k < base + perWriter; k++) {
+                    dict.put(k, k);
+                }
+                for (int k = base; k < base + perWriter; k += 2) {
+                    dict.remove(k);
+                }
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(READERS * perWriter / 2, dict.size(), "Size should count every surviving key");
+        assertEquals(READERS * perWriter / 2, dict.keys().size(), "Keys should list every surviving key");
+        for (int k = 0; k < READERS * perWriter; k++) {
+            if (k % 2 == 0) {
+                assertNull(dict.get(k), "Removed keys should be absent");
+            } else {
+                assertEquals(k, dict.get(k), "Surviving keys should keep their values");
+            }
+        }
+    }
+
+    @DisplayName("A graph built on concurrent dictionaries can be read by many threads")
+    @Test
+    public void stressGraphReaders() throws InterruptedException {
+        int n = 2000;
+        IGraph<Integer, Integer> g = new Graph<>(ConcurrentHashDictionary::new);
+        for (int v = 0; v < n; v++) {
+            g.addVertex(v);
+        }
+        for (int v = 0; v < n; v++) {
+            g.addEdge(v, (v + 1) % n, v);
+            g.addEdge(v, (v * 7) % n, -v);
+        }
+
+        AtomicInteger failures = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            tasks.add(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int v = 0; v < n; v++) {
+                        int next = (v + 1) % n;
+                        // the second edge replaces the first when both go to next
+                        boolean same = (v * 7) % n == next;
+                        if (!Integer.valueOf(same ? -v : v).equals(g.adjacent(v, next))
+                                || g.neighbors(v).size() != (same ? 1 : 2)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(0, failures.get(), "Concurrent reads should match the graph");
+    }
+}
@@ -0,0 +1,484 @@
+package edu.caltech.cs2.project07;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import edu.caltech.cs2.datastructures.ChainingHashDictionary;
+import edu.caltech.cs2.datastructures.ConcurrentHashDictionary;
+import edu.caltech.cs2.datastructures.Graph;
+import edu.caltech.cs2.datastructures.LongDoubleDictionary;
+import edu.caltech.cs2.datastructures.LongIntDictionary;
+import edu.caltech.cs2.datastructures.LongObjectDictionary;
+import edu.caltech.cs2.datastructures.MoveToFrontDictionary;
+import edu.caltech.cs2.datastructures.RobinHoodHashDictionary;
+import edu.caltech.cs2.helpers.Reflection;
+import edu.caltech.cs2.interfaces.IDictionary;
+import edu.caltech.cs2.interfaces.IDictionaryFactory;
+import edu.caltech.cs2.interfaces.IGraph;
+import edu.caltech.cs2.interfaces.ISet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("C")
+public class DictionaryTests {
+
+    /**
+     * A key whose hash code is shared by every key in the same group of
+     * eight, so that keys collide in any table.
+     */
+    private static class Collider {
+        private final int id;
+
+        private Collider(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id / 8;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).id == this.id;
+        }
+
+        @Override
+        public String toString() {
+            return "Collider(" + this.id + ")";
+        }
+    }
+
+    private static IDictionaryFactory factory(String name) {
+        switch (name) {
+            case "ChainingHashDictionary":
+                return ChainingHashDictionary::withMoveToFrontChains;
+            case "RobinHoodHashDictionary":
+                return RobinHoodHashDictionary::new;
+            case "ConcurrentHashDictionary":
+                return ConcurrentHashDictionary::new;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /**
+     * Checks that dict holds exactly the entries of expected, through every
+     * read method of IDictionary.
+     */
+    private static <K, V> void assertSameEntries(Map<K, V> expected, IDictionary<K, V> dict) {
+        assertEquals(expected.size(), dict.size(), "Size should match");
+        assertEquals(expected.size(), dict.keys().size(), "keys() should have one entry per key");
+        assertEquals(expected.size(), dict.values().size(), "values() should have one entry per key");
+        Set<K> iterated = new HashSet<>();
+        for (K key : dict) {
+            assertTrue(iterated.add(key), "Iterator should return each key once");
+        }
+        assertEquals(expected.keySet(), iterated, "Iterator should return every key");
+        for (Map.Entry<K, V> e : expected.entrySet()) {
+            assertTrue(dict.containsKey(e.getKey()), "Should contain " + e.getKey());
+            assertEquals(e.getValue(), dict.get(e.getKey()), "Value of " + e.getKey() + " should match");
+            assertTrue(dict.containsValue(e.getValue()), "Should contain value " + e.getValue());
+        }
+    }
+
+    @ParameterizedTest(name = "Test the IDictionary contract on {0}")
+    @DisplayName("put, get, remove and the collections follow the IDictionary contract")
+    @CsvSource({"ChainingHashDictionary", "RobinHoodHashDictionary", "ConcurrentHashDictionary"})
+    public void contractTest(String name) {
+        IDictionary<String, Integer> dict = factory(name).create();
+        assertTrue(dict.isEmpty(), "New dictionary should be empty");
+        assertNull(dict.get("a"), "Missing key should map to null");
+        assertNull(dict.remove("a"), "Removing a missing key should return null");
+
+        assertNull(dict.put("a", 1), "First put should return null");
+        assertNull(dict.put("b", 2), "First put should return null");
+        assertEquals(1, dict.put("a", 3), "Second put should return the old value");
+        assertEquals(2, dict.size(), "Replacing a value should not change the size");
+        assertEquals(3, dict.get("a"), "Put should replace the value");
+        assertFalse(dict.containsValue(1), "Replaced value should be gone");
+
+        assertEquals(3, dict.remove("a"), "Remove should return the old value");
+        assertNull(dict.remove("a"), "Second remove should return null");
+        assertFalse(dict.containsKey("a"), "Removed key should be gone");
+        assertEquals(1, dict.size(), "Remove should shrink the size");
+        assertEquals(2, dict.get("b"), "Other keys should be unaffected");
+    }
+
+    @ParameterizedTest(name = "Test colliding keys on {0}")
+    @DisplayName("Keys with equal hash codes are kept apart, including after removals")
+    @CsvSource({"ChainingHashDictionary", "RobinHoodHashDictionary", "ConcurrentHashDictionary"})
+    public void collisionTest(String name) {
+        IDictionary<Collider, Integer> dict = factory(name).create();
+        Map<Collider, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            dict.put(new Collider(i), i);
+            expected.put(new Collider(i), i);
+        }
+        assertSameEntries(expected, dict);
+
+        // removing from the middle of each run of collisions makes the keys
+        // after it move back, which every later lookup depends on
+        for (int i = 0; i < 2000; i += 3) {
+            assertEquals(i, dict.remove(new Collider(i)), "Remove should return the old value");
+            expected.remove(new Collider(i));
+            assertNull(dict.get(new Collider(i)), "Removed key should be gone");
+        }
+        assertSameEntries(expected, dict);
+
+        for (int i = 0; i < 2000; i += 3) {
+            assertNull(dict.put(new Collider(i), -i), "Removed key should be added again");
+            expected.put(new Collider(i), -i);
+        }
+        assertSameEntries(expected, dict);
+    }
+
+    @ParameterizedTest(name = "Test random operations on {0}")
+    @DisplayName("Random puts and removes match java.util.HashMap")
+    @CsvSource({"ChainingHashDictionary", "RobinHoodHashDictionary", "ConcurrentHashDictionary"})
+    public void randomOperationsTest(String name) {
+        Random r = new Random(48);
+        IDictionary<Integer, Integer> dict = factory(name).create();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 50000; op++) {
+            int key = r.nextInt(2000) - 1000;
+            if (r.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), dict.remove(key), "Remove should return the old value");
+            } else {
+                int value = r.nextInt(100);
+                assertEquals(expected.put(key, value), dict.put(key, value), "Put should return the old value");
+            }
+            assertEquals(expected.get(key), dict.get(key), "Get should see the last write");
+        }
+        assertSameEntries(expected, dict);
+    }
+
+    @ParameterizedTest(name = "Test a graph built on {0}")
+    @DisplayName("A graph built on any dictionary matches one built on java.util maps")
+    @CsvSource({"ChainingHashDictionary", "RobinHoodHashDictionary", "ConcurrentHashDictionary"})
+    public void graphFactoryTest(String name) {
+        Random r = new Random(7);
+        int n = 300;
+        IGraph<Integer, Integer> g = new Graph<>(factory(name));
+        Map<Integer, Map<Integer, Integer>> expected = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            assertTrue(g.addVertex(v), "Should be able to add a vertex");
+            expected.put(v, new HashMap<>());
+        }
+        assertFalse(g.addVertex(0), "Should not add a vertex twice");
+        for (int i = 0; i < 3000; i++) {
+            int src = r.nextInt(n);
+            int dest = r.nextInt(n);
+            int w = r.nextInt(1000);
+            boolean added = expected.get(src).put(dest, w) == null;
+            assertEquals(added, g.addEdge(src, dest, w), "addEdge should report whether the edge is new");
+        }
+        for (int i = 0; i < 500; i++) {
+            int src = r.nextInt(n);
+            int dest = r.nextInt(n);
+            boolean removed = expected.get(src).remove(dest) != null;
+            assertEquals(removed, g.removeEdge(src, dest), "removeEdge should report whether the edge existed");
+        }
+
+        assertEquals(n, g.vertices().size(), "Graph should have every vertex");
+        for (int v = 0; v < n; v++) {
+            assertEquals(expected.get(v).size(), g.neighbors(v).size(), "Neighbors of " + v + " should match");
+            for (int u = 0; u < n; u++) {
+                assertEquals(expected.get(v).get(u), g.adjacent(v, u), "Edge " + v + " -> " + u + " should match");
+            }
+        }
+    }
+
+    @DisplayName("LongIntDictionary matches java.util.HashMap, including the zero key and removals")
+    @Test
+    public void longIntDictionaryTest() {
+        Random r = new Random(23);
+        LongIntDictionary dict = new LongIntDictionary();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 100000; op++) {
+            // a small range of keys, spread so that they cluster in the table
+            long key = (r.nextInt(600) - 300) * 4096L;
+            int value = r.nextInt(1000);
+            switch (r.nextInt(6)) {
+                case 0:
+                    assertEquals(expected.getOrDefault(key, 0), dict.putLong(key, value),
+                            "putLong should return the old value, or 0");
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    // a long key with a boxed value resolves to the boxed put
+                    assertEquals(expected.put(key, value), dict.put(key, Integer.valueOf(value)),
+                            "put should return the old value");
+                    break;
+                case 2:
+                    assertEquals(expected.getOrDefault(key, 0), dict.remove(key),
+                            "remove should return the old value, or 0");
+                    expected.remove(key);
+                    break;
+                case 3:
+                    assertEquals(expected.remove(key), dict.remove(Long.valueOf(key)),
+                            "remove should return the old value");
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, -1), dict.getOrDefault(key, -1),
+                            "getOrDefault should see the last write");
+                    assertEquals(expected.containsKey(key), dict.containsKey(key),
+                            "containsKey should see the last write");
+            }
+            assertEquals(expected.size(), dict.size(), "Size should match");
+        }
+        // the zero key is stored apart from the table
+        assertEquals(expected.getOrDefault(0L, 0), dict.putLong(0, 5), "putLong should return the old value of 0");
+        assertEquals(5, dict.putLong(0, 7), "putLong should return the old value of 0");
+        assertEquals(7, dict.remove(0), "Removing 0 should return its value");
+        assertFalse(dict.containsKey(0), "Removed 0 should be gone");
+        assertEquals(0, dict.remove(0), "Removing 0 again should find nothing");
+        assertEquals(0, dict.putLong(0, 6), "0 should be new again");
+        expected.put(0L, 6);
+        assertSameEntries(expected, dict);
+    }
+
+    @DisplayName("LongDoubleDictionary matches java.util.HashMap, including the zero key and removals")
+    @Test
+    public void longDoubleDictionaryTest() {
+        Random r = new Random(31);
+        LongDoubleDictionary dict = new LongDoubleDictionary();
+        Map<Long, Double> expected = new HashMap<>();
+        for (int op = 0; op < 100000; op++) {
+            long key = (r.nextInt(600) - 300) * 4096L;
+            double value = r.nextInt(1000) / 8.0;
+            switch (r.nextInt(6)) {
+                case 0:
+                    assertEquals(expected.getOrDefault(key, 0.0), dict.putLong(key, value),
+                            "putLong should return the old value, or 0");
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    // a long key with a boxed value resolves to the boxed put
+                    assertEquals(expected.put(key, value), dict.put(key, Double.valueOf(value)),
+                            "put should return the old value");
+                    break;
+                case 2:
+                    assertEquals(expected.getOrDefault(key, 0.0), dict.remove(key),
+                            "remove should return the old value, or 0");
+                    expected.remove(key);
+                    break;
+                case 3:
+                    assertEquals(expected.remove(key), dict.remove(Long.valueOf(key)),
+                            "remove should return the old value");
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, -1.0), dict.getOrDefault(key, -1.0),
+                            "getOrDefault should see the last write");
+                    assertEquals(expected.containsKey(key), dict.containsKey(key),
+                            "containsKey should see the last write");
+            }
+            assertEquals(expected.size(), dict.size(), "Size should match");
+        }
+        // the zero key is stored apart from the table
+        assertEquals(expected.getOrDefault(0L, 0.0), dict.putLong(0, 5.5), "putLong should return the old value of 0");
+        assertEquals(5.5, dict.remove(0), "Removing 0 should return its value");
+        assertFalse(dict.containsKey(0), "Removed 0 should be gone");
+        assertEquals(0.0, dict.putLong(0, 6.5), "0 should be new again");
+        expected.put(0L, 6.5);
+        // NaN and -0.0 are values like any other, matched bit for bit
+        dict.putLong(4096, Double.NaN);
+        expected.put(4096L, Double.NaN);
+        assertTrue(dict.containsValue(Double.NaN), "NaN should be found as a value");
+        assertFalse(dict.containsValue(-0.0), "-0.0 should not match a stored 0.0");
+        assertSameEntries(expected, dict);
+    }
+
+    @DisplayName("LongObjectDictionary matches java.util.HashMap, including the zero key and removals")
+    @Test
+    public void longObjectDictionaryTest() {
+        Random r = new Random(29);
+        LongObjectDictionary<Integer> dict = new LongObjectDictionary<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 100000; op++) {
+            long key = (r.nextInt(600) - 300) * 4096L;
+            int value = r.nextInt(1000);
+            switch (r.nextInt(5)) {
+                case 0:
+                    assertEquals(expected.put(key, value), dict.putLong(key, value),
+                            "putLong should return the old value");
+                    break;
+                case 1:
+                    assertEquals(expected.put(key, value), dict.put(key, Integer.valueOf(value)),
+                            "put should return the old value");
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), dict.remove(key), "remove should return the old value");
+                    break;
+                default:
+                    assertEquals(expected.get(key), dict.get(key), "get should see the last write");
+                    assertEquals(expected.containsKey(key), dict.containsKey(key),
+                            "containsKey should see the last write");
+            }
+            assertEquals(expected.size(), dict.size(), "Size should match");
+        }
+        // the zero key is stored apart from the table
+        assertEquals(expected.put(0L, 5), dict.putLong(0, 5), "putLong should return the old value of 0");
+        assertEquals(5, dict.remove(0), "Removing 0 should return its value");
+        assertNull(dict.get(0), "Removed 0 should be gone");
+        assertNull(dict.putLong(0, 6), "0 should be new again");
+        expected.put(0L, 6);
+        assertSameEntries(expected, dict);
+    }
+
+    @DisplayName("ChainingHashDictionary answers correctly while a rehash is in progress")
+    @Test
+    public void chainingMigrationTest() {
+        Random r = new Random(31);
+        ChainingHashDictionary<Integer, Integer> dict = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        Map<Integer, Integer> expected = new HashMap<>();
+        int duringMigration = 0;
+        int key = 0;
+        while (duringMigration < 2000) {
+            Object oldTable = Reflection.getFieldValue(ChainingHashDictionary.class, "oldTable", dict);
+            if (oldTable == null) {
+                // grow until the next rehash starts
+                dict.put(key, key);
+                expected.put(key, key);
+                key++;
+                continue;
+            }
+
+            duringMigration++;
+            int k = r.nextInt(key + 10);
+            switch (r.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.remove(k), dict.remove(k), "Remove should return the old value");
+                    break;
+                case 1:
+                    assertEquals(expected.put(k, -k), dict.put(k, -k), "Put should return the old value");
+                    break;
+                default:
+                    assertEquals(expected.get(k), dict.get(k), "Get should see the last write");
+                    assertEquals(expected.containsKey(k), dict.containsKey(k), "containsKey should see the last write");
+            }
+            assertEquals(expected.size(), dict.size(), "Size should match");
+        }
+        assertSameEntries(expected, dict);
+    }
+
+    @DisplayName("ChainingHashDictionary keeps growing past the end of its primes list")
+    @Test
+    public void chainingGrowthTest() {
+        int n = 500000;
+        ChainingHashDictionary<Integer, Integer> dict = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        for (int k = 0; k < n; k++) {
+            assertNull(dict.put(k, k), "Each key should be new");
+        }
+        assertEquals(n, dict.size(), "Size should count every key");
+        Object[] table = Reflection.getFieldValue(ChainingHashDictionary.class, "hashTable", dict);
+        assertTrue(table.length > 411527, "Table should grow past the largest listed prime");
+        for (int k = 0; k < n; k++) {
+            assertEquals(k, dict.get(k), "Every key should keep its value");
+        }
+    }
+
+    @DisplayName("MoveToFrontDictionary removes keys that are not at the front")
+    @Test
+    public void moveToFrontRemoveTest() {
+        Random r = new Random(37);
+        MoveToFrontDictionary<Integer, Integer> dict = new MoveToFrontDictionary<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int k = 0; k < 20; k++) {
+            dict.put(k, k);
+            expected.put(k, k);
+        }
+        while (!expected.isEmpty()) {
+            int k = r.nextInt(20);
+            // a lookup moves some other key to the front first
+            int front = r.nextInt(20);
+            assertEquals(expected.get(front), dict.get(front), "Get should see the stored value");
+            assertEquals(expected.remove(k), dict.remove(k), "Remove should return the old value");
+            assertNull(dict.get(k), "Removed key should be gone");
+            assertSameEntries(expected, dict);
+        }
+    }
+
+    @DisplayName("A frozen ChainingHashDictionary answers lookups as before and rejects changes")
+    @Test
+    public void freezeTest() {
+        Random r = new Random(41);
+        ChainingHashDictionary<Collider, Integer> dict = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        Map<Collider, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 5000; op++) {
+            Collider key = new Collider(r.nextInt(3000));
+            if (r.nextInt(4) == 0) {
+                dict.remove(key);
+                expected.remove(key);
+            } else {
+                dict.put(key, op);
+                expected.put(key, op);
+            }
+        }
+
+        dict.freeze();
+        assertSameEntries(expected, dict);
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(expected.get(new Collider(i)), dict.get(new Collider(i)), "Lookups should not change");
+        }
+        assertThrows(UnsupportedOperationException.class, () -> dict.put(new Collider(0), 0),
+                "put should throw once frozen");
+        assertThrows(UnsupportedOperationException.class, () -> dict.remove(new Collider(0)),
+                "remove should throw once frozen");
+        dict.freeze();
+        assertSameEntries(expected, dict);
+
+        ISet<Integer> set = ISet.backedBy(ChainingHashDictionary::withMoveToFrontChains);
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+        set.freeze();
+        assertEquals(100, set.size(), "Frozen set should keep its elements");
+        assertTrue(set.contains(42), "Frozen set should keep its elements");
+        assertFalse(set.contains(100), "Frozen set should not gain elements");
+        assertThrows(UnsupportedOperationException.class, () -> set.add(100), "add should throw once frozen");
+    }
+
+    @DisplayName("Freezing a graph's dictionaries leaves its vertices and edges unchanged")
+    @Test
+    public void graphFreezeTest() {
+        Random r = new Random(43);
+        int n = 300;
+        Graph<Integer, Integer> g = new Graph<>();
+        for (int v = 0; v < n; v++) {
+            g.addVertex(v);
+        }
+        for (int i = 0; i < 3000; i++) {
+            g.addEdge(r.nextInt(n), r.nextInt(n), r.nextInt(1000));
+        }
+        Integer[][] before = new Integer[n][n];
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            degree[v] = g.neighbors(v).size();
+            for (int u = 0; u < n; u++) {
+                before[v][u] = g.adjacent(v, u);
+            }
+        }
+
+        g.freezeDictionaries();
+        assertEquals(n, g.vertices().size(), "Graph should keep every vertex");
+        for (int v = 0; v < n; v++) {
+            assertEquals(degree[v], g.neighbors(v).size(), "Neighbors of " + v + " should not change");
+            for (int u : g.neighbors(v)) {
+                assertNotNull(before[v][u], "Neighbors of " + v + " should not change");
+            }
+            for (int u = 0; u < n; u++) {
+                assertEquals(before[v][u], g.adjacent(v, u), "Edge " + v + " -> " + u + " should not change");
+            }
+        }
+        assertThrows(UnsupportedOperationException.class, () -> g.addEdge(0, 1, 5), "Frozen graph should reject edges");
+    }
+}
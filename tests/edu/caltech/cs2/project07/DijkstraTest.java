@@ -1,8 +1,11 @@
 package edu.caltech.cs2.project07;
 
 import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CSRGraph;
 import edu.caltech.cs2.datastructures.Graph;
+import edu.caltech.cs2.datastructures.LandmarkTable;
 import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.RoutingEngine;
 import edu.caltech.cs2.helpers.Reflection;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.IGraph;
@@ -16,11 +19,19 @@ import org.junit.jupiter.params.provider.CsvSource;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -150,4 +161,327 @@ public class DijkstraTest {
             }
         }
     }
+
+    /**
+     * A shortest-path query checked by checkRandomGraph.
+     */
+    private interface PathQuery {
+        /**
+         * Returns the length of a shortest path from start to end in bmg, or
+         * null if there is none.
+         */
+        Double length(BeaverMapsGraph bmg, long start, long end);
+    }
+
+    /**
+     * Sums the edge weights along path, failing if two consecutive
+     * locations are not joined by an edge.
+     */
+    private static double pathLength(BeaverMapsGraph bmg, IDeque<Location> path) {
+        double pathLen = 0;
+        Location prev = null;
+        for (Location l : path) {
+            if (prev != null) {
+                Double w = bmg.adjacent(prev.id, l.id);
+                assertNotNull(w, "Path should only use edges of the graph");
+                pathLen += w;
+            }
+            prev = l;
+        }
+        return pathLen;
+    }
+
+    /**
+     * Makes the same random edge changes as dijkstraStressTest to one
+     * BeaverMapsGraph searching with queue and, after each change, checks
+     * query on a random pair against the lengths recorded in random_graph.
+     */
+    private static void checkRandomGraph(RoutingEngine.Queue queue, PathQuery query) throws FileNotFoundException {
+        final int num_tests = 1000;
+        Scanner s = new Scanner(new File("./data/dijkstra_path/random_graph"));
+        Random r = new Random(69420);
+
+        int num_vertices = r.nextInt(100);
+        BeaverMapsGraph bmg = new BeaverMapsGraph();
+        bmg.useQueue(queue);
+        for (int i = 0; i < num_vertices; i++) {
+            bmg.addVertex(new Location(i));
+        }
+        for (int i = 0; i < num_tests; i++) {
+            int one = r.nextInt(num_vertices);
+            int two = r.nextInt(num_vertices);
+            if (one == two)
+                two = (two + 1) % num_vertices;
+
+            int dice = r.nextInt(5);
+            if (dice <= 4) {
+                bmg.addEdge((long) one, (long) two, (double) r.nextInt(100));
+            } else if (dice <= 5) {
+                bmg.removeEdge((long) one, (long) two);
+            }
+
+            int startvertex = r.nextInt(num_vertices);
+            int endvertex = r.nextInt(num_vertices);
+            Double length = query.length(bmg, startvertex, endvertex);
+
+            String expected = s.nextLine();
+            if (expected.equals("null")) {
+                assertNull(length, "Path found but no path exists");
+            }
+            else {
+                assertNotNull(length, "Path exists but was not found");
+                assertEquals(Double.parseDouble(expected), length, "Path lengths are not equivalent");
+            }
+        }
+    }
+
+    @Order(4)
+    @ParameterizedTest
+    @DisplayName("Tests each routing algorithm on random graph and paths")
+    @CsvSource({
+            "DIJKSTRA, HEAP",
+            "ASTAR, HEAP",
+            "BIDIRECTIONAL, HEAP",
+            "CH, HEAP",
+            "ALT, HEAP",
+            "DIJKSTRA, RADIX",
+            "ASTAR, RADIX",
+            "BIDIRECTIONAL, RADIX",
+            "ALT, RADIX"
+    })
+    public void routeStressTest(String algorithm, String queue) throws FileNotFoundException {
+        checkRandomGraph(RoutingEngine.Queue.valueOf(queue), (bmg, start, end) -> {
+            IDeque<Location> res = bmg.route(new Location(start), new Location(end),
+                    RoutingEngine.Algorithm.valueOf(algorithm));
+            if (res == null) {
+                return null;
+            }
+            assertEquals(new Location(start), res.peekFront(), "Path should begin at the start");
+            assertEquals(new Location(end), res.peekBack(), "Path should end at the target");
+            return pathLength(bmg, res);
+        });
+    }
+
+    @Order(5)
+    @DisplayName("Tests hub label distances on random graphs")
+    @Test
+    public void distanceStressTest() throws FileNotFoundException {
+        checkRandomGraph(RoutingEngine.Queue.HEAP, (bmg, start, end) -> {
+            double dist = bmg.distance(new Location(start), new Location(end));
+            return dist == Double.POSITIVE_INFINITY ? null : dist;
+        });
+    }
+
+    private static final Map<RoutingEngine.Queue, BeaverMapsGraph> caltech = new EnumMap<>(RoutingEngine.Queue.class);
+
+    /**
+     * Returns the Caltech map, loaded once for each worklist.
+     */
+    private static BeaverMapsGraph caltech(RoutingEngine.Queue queue) {
+        if (!caltech.containsKey(queue)) {
+            BeaverMapsGraph bmg = new BeaverMapsGraph("data/caltech.buildings", "data/caltech.waypoints", "data/caltech.roads");
+            bmg.useQueue(queue);
+            caltech.put(queue, bmg);
+        }
+        return caltech.get(queue);
+    }
+
+    /**
+     * Returns 300 random pairs of locations on bmg, mostly building to
+     * building, the pairs the map is asked about.
+     */
+    private static List<Location[]> caltechPairs(BeaverMapsGraph bmg) {
+        List<Location> buildings = new ArrayList<>();
+        for (Location b : bmg.getBuildings()) {
+            buildings.add(b);
+        }
+        List<Location> waypoints = new ArrayList<>();
+        for (Long id : bmg.vertices()) {
+            Location l = bmg.getLocationByID(id);
+            if (l.type != Location.Type.BUILDING) {
+                waypoints.add(l);
+            }
+        }
+
+        List<Location[]> pairs = new ArrayList<>();
+        Random r = new Random(2020);
+        for (int i = 0; i < 300; i++) {
+            List<Location> from = i % 3 == 2 ? waypoints : buildings;
+            List<Location> to = i % 6 == 5 ? waypoints : buildings;
+            pairs.add(new Location[]{from.get(r.nextInt(from.size())), to.get(r.nextInt(to.size()))});
+        }
+        return pairs;
+    }
+
+    @Order(6)
+    @ParameterizedTest
+    @DisplayName("Tests each routing algorithm against Dijkstra on the Caltech map")
+    @CsvSource({
+            "ASTAR, HEAP",
+            "BIDIRECTIONAL, HEAP",
+            "CH, HEAP",
+            "ALT, HEAP",
+            "DIJKSTRA, RADIX",
+            "ASTAR, RADIX",
+            "BIDIRECTIONAL, RADIX",
+            "ALT, RADIX"
+    })
+    public void caltechRouteTest(String algorithm, String queue) {
+        // the reference paths always come from Dijkstra with the indexed heap
+        BeaverMapsGraph ref = caltech(RoutingEngine.Queue.HEAP);
+        BeaverMapsGraph bmg = caltech(RoutingEngine.Queue.valueOf(queue));
+        for (Location[] pair : caltechPairs(bmg)) {
+            Location start = pair[0];
+            Location end = pair[1];
+            IDeque<Location> expected = ref.dijkstra(start, end);
+            IDeque<Location> res = bmg.route(start, end, RoutingEngine.Algorithm.valueOf(algorithm));
+            if (expected == null) {
+                assertNull(res, "Path found from " + start.id + " to " + end.id + " but no path exists");
+                continue;
+            }
+
+            assertNotNull(res, "Path from " + start.id + " to " + end.id + " exists but was not found");
+            assertEquals(start, res.peekFront(), "Path should begin at the start");
+            assertEquals(end, res.peekBack(), "Path should end at the target");
+            assertEquals(pathLength(bmg, expected), pathLength(bmg, res), 1e-6, "Path lengths are not equivalent");
+        }
+    }
+
+    @Order(7)
+    @DisplayName("A saved landmark table loads back only for a map with the same edge weights")
+    @Test
+    public void landmarkSaveLoadTest() throws IOException {
+        BeaverMapsGraph bmg = GraphMaker.transformToLocations(GraphMaker.graph4(10));
+        CSRGraph g = bmg.freeze();
+        LandmarkTable table = bmg.useLandmarks(3, LandmarkTable.Selection.FARTHEST);
+        File file = File.createTempFile("landmarks", ".bin");
+        file.deleteOnExit();
+        table.save(file.getPath());
+
+        LandmarkTable loaded = LandmarkTable.load(file.getPath(), g);
+        assertNotNull(loaded, "A table should load for the map it was computed for");
+        assertEquals(table.size(), loaded.size(), "The loaded table should have the same landmarks");
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.landmark(i), loaded.landmark(i), "The loaded table should have the same landmarks");
+        }
+        for (int v = 0; v < g.size(); v++) {
+            for (int t = 0; t < g.size(); t++) {
+                assertEquals(table.lowerBound(v, t), loaded.lowerBound(v, t), "The loaded table should give the same bounds");
+            }
+        }
+
+        // same vertices and edges, but one edge is longer
+        BeaverMapsGraph changed = GraphMaker.transformToLocations(GraphMaker.graph4(10));
+        changed.addEdge(0L, 1L, 100.0);
+        assertEquals(g.edgeCount(), changed.freeze().edgeCount(), "Changing a weight should keep the edge count");
+        assertNull(LandmarkTable.load(file.getPath(), changed.freeze()), "A table should not load for different edge weights");
+    }
+
+    @Order(8)
+    @DisplayName("Random landmark selection never picks the same vertex twice")
+    @Test
+    public void randomLandmarksTest() {
+        CSRGraph g = GraphMaker.transformToLocations(GraphMaker.graph4(10)).freeze();
+        for (long seed = 0; seed < 20; seed++) {
+            LandmarkTable table = new LandmarkTable(g, g.size(), LandmarkTable.Selection.RANDOM, seed);
+            Set<Integer> landmarks = new HashSet<>();
+            for (int i = 0; i < table.size(); i++) {
+                landmarks.add(table.landmark(i));
+            }
+            assertEquals(g.size(), landmarks.size(), "Every landmark should be a different vertex");
+        }
+    }
+
+    @Order(9)
+    @DisplayName("Tests hub label distances against Dijkstra on the Caltech map")
+    @Test
+    public void caltechDistanceTest() {
+        BeaverMapsGraph bmg = caltech(RoutingEngine.Queue.HEAP);
+        for (Location[] pair : caltechPairs(bmg)) {
+            IDeque<Location> expected = bmg.dijkstra(pair[0], pair[1]);
+            double dist = bmg.distance(pair[0], pair[1]);
+            if (expected == null) {
+                assertEquals(Double.POSITIVE_INFINITY, dist, "Distance found from " + pair[0].id + " to " + pair[1].id + " but no path exists");
+            } else {
+                assertEquals(pathLength(bmg, expected), dist, 1e-6, "Distance should match the Dijkstra path");
+            }
+        }
+    }
+
+    @Order(10)
+    @DisplayName("Tests the distance matrix against pairwise Dijkstra on the Caltech map")
+    @Test
+    public void caltechMatrixTest() {
+        BeaverMapsGraph bmg = caltech(RoutingEngine.Queue.HEAP);
+        List<Location[]> pairs = caltechPairs(bmg);
+        // a missing location and an id that is not on the map both have no distance
+        Location[] sources = new Location[24];
+        Location[] targets = new Location[30];
+        for (int i = 0; i < sources.length - 2; i++) {
+            sources[i] = pairs.get(i)[0];
+        }
+        sources[sources.length - 2] = null;
+        sources[sources.length - 1] = new Location(-12345);
+        for (int j = 0; j < targets.length - 2; j++) {
+            // the first few targets repeat sources, so the diagonal case is covered
+            targets[j] = j < 6 ? sources[j] : pairs.get(100 + j)[1];
+        }
+        targets[targets.length - 2] = new Location(-12345);
+        targets[targets.length - 1] = null;
+
+        double[][] matrix = bmg.distanceMatrix(sources, targets);
+        assertEquals(sources.length, matrix.length, "The matrix should have a row per source");
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(targets.length, matrix[i].length, "The matrix should have a column per target");
+            for (int j = 0; j < targets.length; j++) {
+                if (sources[i] == null || targets[j] == null || sources[i].id < 0 || targets[j].id < 0) {
+                    assertEquals(Double.POSITIVE_INFINITY, matrix[i][j], "Missing locations should have no distance");
+                    continue;
+                }
+                IDeque<Location> expected = bmg.dijkstra(sources[i], targets[j]);
+                if (expected == null) {
+                    assertEquals(Double.POSITIVE_INFINITY, matrix[i][j], "Distance found but no path exists");
+                } else if (sources[i].equals(targets[j])) {
+                    assertEquals(0.0, matrix[i][j], "A location should be at distance 0 from itself");
+                } else {
+                    assertEquals(pathLength(bmg, expected), matrix[i][j], 1e-6, "Distance should match the Dijkstra path");
+                }
+            }
+        }
+    }
+
+    @Order(11)
+    @DisplayName("Tests isochrones against Dijkstra on the Caltech map")
+    @ParameterizedTest(name = "Test isochrone from start {0} with budget {1}")
+    @CsvSource({
+            "0, 0", "1, 300", "2, 1320", "3, 3000",
+    })
+    public void caltechIsochroneTest(int start, double budget) {
+        BeaverMapsGraph bmg = caltech(RoutingEngine.Queue.HEAP);
+        Location s = caltechPairs(bmg).get(start)[0];
+
+        Map<Location, Double> expected = new HashMap<>();
+        for (Long id : bmg.vertices()) {
+            Location l = bmg.getLocationByID(id);
+            IDeque<Location> path = bmg.dijkstra(s, l);
+            if (path != null) {
+                double dist = pathLength(bmg, path);
+                if (dist <= budget) {
+                    expected.put(l, dist);
+                }
+            }
+        }
+
+        IDeque<Location> reached = bmg.isochrone(s, budget);
+        assertEquals(s, reached.peekFront(), "The isochrone should start at the start");
+        double last = 0;
+        Set<Location> seen = new HashSet<>();
+        for (Location l : reached) {
+            assertTrue(seen.add(l), "Location " + l.id + " reached more than once");
+            assertTrue(expected.containsKey(l), "Location " + l.id + " is not within the budget");
+            assertTrue(expected.get(l) >= last - 1e-6, "Locations should be reached in order of distance");
+            last = expected.get(l);
+        }
+        assertEquals(expected.size(), seen.size(), "Every location within the budget should be reached");
+    }
 }
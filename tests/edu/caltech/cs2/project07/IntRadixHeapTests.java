@@ -0,0 +1,97 @@
+package edu.caltech.cs2.project07;
+
+import java.util.Random;
+
+import edu.caltech.cs2.datastructures.IntDoubleIndexedHeap;
+import edu.caltech.cs2.datastructures.IntRadixHeap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("C")
+public class IntRadixHeapTests {
+
+    @DisplayName("Keys in the same centi-foot come out in order of their exact priorities")
+    @Test
+    public void equalUnitsTest() {
+        IntRadixHeap heap = new IntRadixHeap(8);
+        // all of these are 1000 centi-feet once quantized
+        double[] priorities = {10.004, 10.001, 10.0035, 10.002, 10.0, 10.0049};
+        for (int k = 0; k < priorities.length; k++) {
+            assertTrue(heap.insertOrDecrease(k, priorities[k]), "Inserting a new key should change the heap");
+        }
+        int[] order = {4, 1, 3, 2, 0, 5};
+        for (int k : order) {
+            assertEquals(priorities[k], heap.peekPriority(), "Peek should see the smallest exact priority");
+            assertEquals(k, heap.pop(), "Keys should come out by exact priority");
+        }
+        assertTrue(heap.isEmpty(), "Heap should be empty");
+    }
+
+    @DisplayName("Keys lowered to at or below the last minimum still come out first")
+    @Test
+    public void decreaseBelowLastTest() {
+        IntRadixHeap heap = new IntRadixHeap(8);
+        heap.insertOrDecrease(0, 5.0);
+        heap.insertOrDecrease(1, 100.0);
+        heap.insertOrDecrease(2, 200.0);
+        heap.insertOrDecrease(3, 5.009);
+        assertEquals(0, heap.pop(), "Smallest key should come out first");
+
+        // the last minimum is now 500 centi-feet; these all land in bucket 0
+        assertTrue(heap.insertOrDecrease(2, 3.0), "Lowering a key should change the heap");
+        heap.insertOrDecrease(4, 5.001);
+        heap.insertOrDecrease(5, 4.0);
+        assertFalse(heap.insertOrDecrease(1, 150.0), "Raising a key should not change the heap");
+        assertTrue(heap.contains(2), "Lowered key should still be in the heap");
+
+        int[] order = {2, 5, 4, 3, 1};
+        for (int k : order) {
+            assertEquals(k, heap.pop(), "Keys should come out by exact priority");
+        }
+        assertFalse(heap.contains(2), "Popped key should be gone");
+        assertTrue(heap.isEmpty(), "Heap should be empty");
+    }
+
+    @DisplayName("Monotone random operations pop the same priorities as IntDoubleIndexedHeap")
+    @Test
+    public void randomAgainstIndexedHeapTest() {
+        Random r = new Random(20);
+        int n = 5000;
+        IntRadixHeap radix = new IntRadixHeap(n);
+        IntDoubleIndexedHeap heap = new IntDoubleIndexedHeap(n, 4);
+        for (int round = 0; round < 3; round++) {
+            double last = 0;
+            for (int op = 0; op < 20000; op++) {
+                if (r.nextInt(3) > 0 || heap.isEmpty()) {
+                    int k = r.nextInt(n);
+                    // priorities never drop below the last popped one, as in Dijkstra,
+                    // and are rounded so that many of them tie
+                    double p = last + Math.round(r.nextDouble() * 2000) / 1000.0;
+                    assertEquals(heap.insertOrDecrease(k, p), radix.insertOrDecrease(k, p),
+                            "Both heaps should agree on whether " + k + " changed");
+                } else {
+                    assertEquals(heap.size(), radix.size(), "Sizes should match");
+                    last = heap.peekPriority();
+                    assertEquals(last, radix.peekPriority(), "Smallest priorities should match");
+                    int k = radix.pop();
+                    // the heaps may break ties differently, so check that k is tied for
+                    // the minimum and then nudge it to the top before popping it
+                    assertEquals(last, heap.priority(k), "Popped key should have the smallest priority");
+                    heap.decreaseKey(k, Math.nextDown(last));
+                    assertEquals(k, heap.pop(), "Nudged key should come out first");
+                }
+            }
+            while (!heap.isEmpty()) {
+                assertEquals(heap.peekPriority(), radix.peekPriority(), "Smallest priorities should match");
+                heap.pop();
+                radix.pop();
+            }
+            assertTrue(radix.isEmpty(), "Heaps should empty together");
+            radix.clear();
+            heap.clear();
+        }
+    }
+}
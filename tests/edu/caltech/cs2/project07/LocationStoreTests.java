@@ -0,0 +1,95 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.LocationStore;
+import edu.caltech.cs2.datastructures.StringPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("C")
+public class LocationStoreTests {
+    @ParameterizedTest
+    @DisplayName("StringPool gives back every string it was given")
+    @CsvSource({
+            "false", "true"
+    })
+    public void stringPoolTest(boolean offHeap) {
+        StringPool pool = new StringPool(offHeap);
+        String[] strings = {
+                "Beckman Auditorium", "", "Caf\u00e9 \u00c7a Va", "Se\u00f1or Fish", "\u6771\u4eac\u5927\u5b66", "\ud83e\uddab Beaver", "Beckman Auditorium", ""
+        };
+        int[] refs = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            refs[i] = pool.intern(strings[i]);
+        }
+        for (int i = 0; i < strings.length; i++) {
+            assertNotEquals(StringPool.NULL, refs[i], "Only null should intern to NULL");
+            assertEquals(strings[i], pool.get(refs[i]), "Strings should survive the UTF-8 round trip");
+        }
+        assertEquals(refs[0], refs[6], "Equal strings should share a reference");
+        assertEquals(refs[1], refs[7], "Equal strings should share a reference");
+        assertEquals(6, pool.size(), "The pool should count each distinct string once");
+        assertEquals(StringPool.NULL, pool.intern(null), "null should intern to NULL");
+        assertNull(pool.get(StringPool.NULL), "NULL should give back null");
+        assertEquals(6, pool.size(), "null should not be stored");
+
+        // enough strings to grow both the buffer and the table, some long enough for a two-byte length
+        List<String> many = new ArrayList<>();
+        List<Integer> manyRefs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder s = new StringBuilder("\u00fc" + i);
+            for (int j = 0; j < i % 200; j++) {
+                s.append('\u00e9');
+            }
+            many.add(s.toString());
+            manyRefs.add(pool.intern(s.toString()));
+        }
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(strings[i], pool.get(refs[i]), "Growing the pool should not move old strings");
+        }
+        for (int i = 0; i < many.size(); i++) {
+            assertEquals(many.get(i), pool.get(manyRefs.get(i)), "Strings should survive the UTF-8 round trip");
+            assertEquals(manyRefs.get(i), pool.intern(many.get(i)), "Interning again should find the stored copy");
+        }
+        assertEquals(6 + many.size(), pool.size(), "The pool should count each distinct string once");
+    }
+
+    @ParameterizedTest
+    @DisplayName("LocationStore gives back every location it was given")
+    @CsvSource({
+            "false", "true"
+    })
+    public void locationStoreTest(boolean offHeap) {
+        LocationStore store = new LocationStore(offHeap);
+        List<Location> locations = new ArrayList<>();
+        locations.add(new Location(1, 34.1377, -118.1253, "Caf\u00e9 \u00c7a Va", "1200 E California Blvd", "cafe", null, "building"));
+        locations.add(new Location(-2, -34.5, 151.25, "", null, null, "bakery", "building"));
+        locations.add(new Location(Long.MAX_VALUE, 0, 0, null, null, null, null, "waypoint"));
+        locations.add(new Location(4, 89.9, 179.9, "\u6771\u4eac \ud83e\uddab", "", "", "", "waypoint"));
+        int[] slots = new int[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            slots[i] = store.add(locations.get(i));
+        }
+        assertEquals(locations.size(), store.size(), "Each added location should take a slot");
+        for (int i = 0; i < locations.size(); i++) {
+            Location expected = locations.get(i);
+            Location actual = store.location(slots[i]);
+            assertEquals(expected.id, actual.id, "Ids should round trip");
+            assertEquals(expected.id, store.id(slots[i]), "Ids should round trip");
+            assertEquals(expected.lat, actual.lat, "Latitudes should round trip");
+            assertEquals(expected.lon, actual.lon, "Longitudes should round trip");
+            assertEquals(expected.name, actual.name, "Names should round trip");
+            assertEquals(expected.address, actual.address, "Addresses should round trip");
+            assertEquals(expected.amenity, actual.amenity, "Amenities should round trip");
+            assertEquals(expected.shop, actual.shop, "Shops should round trip");
+            assertEquals(expected.type, actual.type, "Types should round trip");
+        }
+    }
+}
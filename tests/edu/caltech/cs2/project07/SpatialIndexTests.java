@@ -0,0 +1,436 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CSRGraph;
+import edu.caltech.cs2.datastructures.ConvexHull;
+import edu.caltech.cs2.datastructures.LinkedDeque;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.RoadSnap;
+import edu.caltech.cs2.interfaces.IDeque;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("C")
+public class SpatialIndexTests {
+    private static final int QUERIES = 2000;
+    private static final double FT_PER_DEGREE = Location.EARTH_RAD_FT * Math.PI / 180;
+
+    private static BeaverMapsGraph caltech;
+
+    /**
+     * Returns the Caltech map, loaded once.
+     */
+    private static BeaverMapsGraph caltech() {
+        if (caltech == null) {
+            caltech = new BeaverMapsGraph("data/caltech.buildings", "data/caltech.waypoints", "data/caltech.roads");
+        }
+        return caltech;
+    }
+
+    private static List<Location> buildings(BeaverMapsGraph bmg) {
+        List<Location> buildings = new ArrayList<>();
+        for (Location b : bmg.getBuildings()) {
+            buildings.add(b);
+        }
+        return buildings;
+    }
+
+    /**
+     * Returns a random point near a random vertex of the map, or now and
+     * then well outside it.
+     */
+    private static double[] randomPoint(CSRGraph g, Random r) {
+        Location center = g.location(r.nextInt(g.size()));
+        double spread = r.nextInt(20) == 0 ? 0.1 : 0.004;
+        return new double[]{
+                center.lat + (r.nextDouble() - 0.5) * spread,
+                center.lon + (r.nextDouble() - 0.5) * spread
+        };
+    }
+
+    @DisplayName("getClosestBuilding() matches a linear scan of the buildings")
+    @Test
+    public void nearestTest() {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+        List<Location> buildings = buildings(bmg);
+        Random r = new Random(11);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            double best = Double.POSITIVE_INFINITY;
+            for (Location b : buildings) {
+                best = Math.min(best, b.getDistance(p[0], p[1]));
+            }
+            Location closest = bmg.getClosestBuilding(p[0], p[1]);
+            assertNotNull(closest, "The map has buildings, so there should be a closest one");
+            assertEquals(best, closest.getDistance(p[0], p[1]), 1e-6, "Closest building should be as close as any building");
+        }
+    }
+
+    @DisplayName("kNearest() matches a linear scan of the buildings for every tag")
+    @Test
+    public void kNearestTest() {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+        List<Location> buildings = buildings(bmg);
+        Set<String> tagSet = new TreeSet<>();
+        for (Location b : buildings) {
+            if (b.amenity != null) {
+                tagSet.add(b.amenity.toLowerCase());
+            }
+            if (b.shop != null) {
+                tagSet.add(b.shop.toLowerCase());
+            }
+        }
+        List<String> tags = new ArrayList<>(tagSet);
+        tags.add(null);
+        tags.add("no such tag");
+
+        Random r = new Random(12);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            int k = r.nextInt(20);
+            String filter = tags.get(r.nextInt(tags.size()));
+
+            List<Double> expected = new ArrayList<>();
+            for (Location b : buildings) {
+                if (filter == null || filter.equalsIgnoreCase(b.amenity) || filter.equalsIgnoreCase(b.shop)) {
+                    expected.add(b.getDistance(p[0], p[1]));
+                }
+            }
+            Collections.sort(expected);
+            expected = expected.subList(0, Math.min(k, expected.size()));
+
+            IDeque<Location> found = bmg.kNearest(p[0], p[1], k, filter);
+            assertEquals(expected.size(), found.size(), "kNearest() should return min(k, matches) buildings");
+            int j = 0;
+            for (Location b : found) {
+                if (filter != null) {
+                    assertTrue(filter.equalsIgnoreCase(b.amenity) || filter.equalsIgnoreCase(b.shop),
+                            "kNearest() should only return buildings tagged " + filter);
+                }
+                assertEquals(expected.get(j), b.getDistance(p[0], p[1]), 1e-6, "kNearest() should return the closest buildings in order");
+                j++;
+            }
+        }
+    }
+
+    @DisplayName("inBox() matches a linear scan of the buildings")
+    @Test
+    public void inBoxTest() {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+        List<Location> buildings = buildings(bmg);
+        Random r = new Random(13);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            double maxLat = p[0] + r.nextDouble() * 0.005;
+            double maxLon = p[1] + r.nextDouble() * 0.005;
+
+            Set<Long> expected = new HashSet<>();
+            for (Location b : buildings) {
+                if (b.lat >= p[0] && b.lat <= maxLat && b.lon >= p[1] && b.lon <= maxLon) {
+                    expected.add(b.id);
+                }
+            }
+            Set<Long> found = new HashSet<>();
+            IDeque<Location> box = bmg.inBox(p[0], p[1], maxLat, maxLon);
+            for (Location b : box) {
+                found.add(b.id);
+            }
+            assertEquals(expected.size(), box.size(), "inBox() should return each building once");
+            assertEquals(expected, found, "inBox() should return exactly the buildings in the box");
+        }
+    }
+
+    @DisplayName("inBox() with a limit returns that many buildings from the box")
+    @Test
+    public void inBoxLimitTest() {
+        BeaverMapsGraph bmg = caltech();
+        int total = buildings(bmg).size();
+        for (int limit : new int[]{0, 1, 10, total - 1, total, total + 1}) {
+            Set<Long> found = new HashSet<>();
+            IDeque<Location> box = bmg.inBox(-90, -180, 90, 180, limit);
+            for (Location b : box) {
+                found.add(b.id);
+            }
+            assertEquals(Math.min(limit, total), box.size(), "inBox() should stop at the limit");
+            assertEquals(box.size(), found.size(), "inBox() should return each building once");
+        }
+
+        Random r = new Random(16);
+        CSRGraph g = bmg.freeze();
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            double maxLat = p[0] + r.nextDouble() * 0.005;
+            double maxLon = p[1] + r.nextDouble() * 0.005;
+            int all = bmg.inBox(p[0], p[1], maxLat, maxLon).size();
+            int limit = r.nextInt(10);
+            IDeque<Location> box = bmg.inBox(p[0], p[1], maxLat, maxLon, limit);
+            assertEquals(Math.min(limit, all), box.size(), "inBox() should return min(limit, matches) buildings");
+            for (Location b : box) {
+                assertTrue(b.lat >= p[0] && b.lat <= maxLat && b.lon >= p[1] && b.lon <= maxLon,
+                        "inBox() should only return buildings in the box");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @DisplayName("nearby() and nearbyBuildings() match a linear scan")
+    @CsvSource({
+            "50", "500", "3000"
+    })
+    public void nearbyTest(double cellSize) {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+        bmg.useGridCellSize(cellSize);
+        Random r = new Random(14);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            double radius = r.nextDouble() * 2000;
+
+            Set<Long> expected = new HashSet<>();
+            Set<Long> expectedBuildings = new HashSet<>();
+            for (int v = 0; v < g.size(); v++) {
+                if (g.location(v).getDistance(p[0], p[1]) < radius) {
+                    expected.add(g.id(v));
+                    if (g.isBuilding(v)) {
+                        expectedBuildings.add(g.id(v));
+                    }
+                }
+            }
+            Set<Long> found = new HashSet<>();
+            IDeque<Location> near = bmg.nearby(p[0], p[1], radius);
+            for (Location l : near) {
+                found.add(l.id);
+            }
+            assertEquals(expected.size(), near.size(), "nearby() should return each location once");
+            assertEquals(expected, found, "nearby() should return exactly the locations inside the radius");
+
+            Set<Long> foundBuildings = new HashSet<>();
+            IDeque<Location> nearBuildings = bmg.nearbyBuildings(p[0], p[1], radius);
+            for (Location l : nearBuildings) {
+                foundBuildings.add(l.id);
+            }
+            assertEquals(expectedBuildings.size(), nearBuildings.size(), "nearbyBuildings() should return each building once");
+            assertEquals(expectedBuildings, foundBuildings, "nearbyBuildings() should return exactly the buildings inside the radius");
+        }
+    }
+
+    @DisplayName("snapToRoad() matches a linear scan of the road segments")
+    @Test
+    public void snapToRoadTest() {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+
+        // the same plane the tree projects onto: feet, tangent at the mean latitude
+        double latSum = 0;
+        for (int v = 0; v < g.size(); v++) {
+            latSum += g.location(v).lat;
+        }
+        double lonScale = Math.cos(Math.toRadians(latSum / g.size()));
+        List<double[]> segments = new ArrayList<>();
+        for (int v = 0; v < g.size(); v++) {
+            for (long id : bmg.neighbors(g.id(v))) {
+                int u = g.indexOf(id);
+                if (u >= 0 && u != v && !g.isBuilding(u) && !g.isBuilding(v)) {
+                    Location a = g.location(v);
+                    Location b = g.location(u);
+                    segments.add(new double[]{
+                            a.lon * lonScale * FT_PER_DEGREE, a.lat * FT_PER_DEGREE,
+                            b.lon * lonScale * FT_PER_DEGREE, b.lat * FT_PER_DEGREE
+                    });
+                }
+            }
+        }
+
+        Random r = new Random(15);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] p = randomPoint(g, r);
+            double qx = p[1] * lonScale * FT_PER_DEGREE;
+            double qy = p[0] * FT_PER_DEGREE;
+            double best = Double.POSITIVE_INFINITY;
+            for (double[] s : segments) {
+                double dx = s[2] - s[0];
+                double dy = s[3] - s[1];
+                double length2 = dx * dx + dy * dy;
+                double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, ((qx - s[0]) * dx + (qy - s[1]) * dy) / length2));
+                double px = s[0] + t * dx - qx;
+                double py = s[1] + t * dy - qy;
+                best = Math.min(best, Math.sqrt(px * px + py * py));
+            }
+
+            RoadSnap snap = bmg.snapToRoad(p[0], p[1]);
+            assertNotNull(snap, "The map has roads, so there should be a closest one");
+            assertEquals(best, snap.distance, 1e-6, "The snapped point should be as close as any road");
+            assertTrue(bmg.adjacent(snap.from.id, snap.to.id) != null || bmg.adjacent(snap.to.id, snap.from.id) != null,
+                    "The snapped point should lie on an edge");
+            assertFalse(snap.from.type == Location.Type.BUILDING || snap.to.type == Location.Type.BUILDING,
+                    "Edges to buildings are not roads");
+            assertEquals(snap.from.lat + snap.fraction * (snap.to.lat - snap.from.lat), snap.lat, 1e-12,
+                    "The snapped latitude should be fraction of the way along the segment");
+            assertEquals(snap.from.lon + snap.fraction * (snap.to.lon - snap.from.lon), snap.lon, 1e-12,
+                    "The snapped longitude should be fraction of the way along the segment");
+        }
+    }
+
+    /**
+     * Sums the edge weights along path, failing if two consecutive
+     * locations are not joined by an edge.
+     */
+    private static double pathLength(BeaverMapsGraph bmg, IDeque<Location> path) {
+        double length = 0;
+        Location prev = null;
+        for (Location l : path) {
+            if (prev != null) {
+                Double w = bmg.adjacent(prev.id, l.id);
+                assertNotNull(w, "Path should only use edges of the graph");
+                length += w;
+            }
+            prev = l;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the length of the part of the road from the snapped point to
+     * end, or infinity if the road does not run that way.
+     */
+    private static double partialLength(BeaverMapsGraph bmg, RoadSnap snap, Location end) {
+        Location other = end.equals(snap.to) ? snap.from : snap.to;
+        Double w = bmg.adjacent(other.id, end.id);
+        if (w == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (end.equals(snap.to) ? 1 - snap.fraction : snap.fraction) * w;
+    }
+
+    @DisplayName("routeFromPoint() leaves the snapped point along its road and then follows a shortest path")
+    @Test
+    public void routeFromPointTest() {
+        BeaverMapsGraph bmg = caltech();
+        CSRGraph g = bmg.freeze();
+        Random r = new Random(17);
+        for (int i = 0; i < QUERIES / 4; i++) {
+            double[] p = randomPoint(g, r);
+            Location target = g.location(r.nextInt(g.size()));
+            RoadSnap snap = bmg.snapToRoad(p[0], p[1]);
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (Location end : new Location[]{snap.from, snap.to}) {
+                IDeque<Location> rest = bmg.dijkstra(end, target);
+                if (rest != null) {
+                    expected = Math.min(expected, partialLength(bmg, snap, end) + pathLength(bmg, rest));
+                }
+            }
+
+            IDeque<Location> path = bmg.routeFromPoint(p[0], p[1], target);
+            if (expected == Double.POSITIVE_INFINITY) {
+                assertNull(path, "No path should be found when neither end of the road reaches the target");
+                continue;
+            }
+            assertNotNull(path, "A path should be found when an end of the road reaches the target");
+
+            Location start = path.removeFront();
+            assertEquals(-1, start.id, "The path should start at the snapped point");
+            assertEquals(snap.lat, start.lat, "The path should start at the snapped point");
+            assertEquals(snap.lon, start.lon, "The path should start at the snapped point");
+            Location end = path.peekFront();
+            assertTrue(end.equals(snap.from) || end.equals(snap.to), "The path should leave along the snapped road");
+            assertEquals(target, path.peekBack(), "The path should end at the target");
+            assertEquals(expected, partialLength(bmg, snap, end) + pathLength(bmg, path), 1e-6,
+                    "The path should be the part of the road to one end plus a shortest path from that end");
+        }
+    }
+
+    /**
+     * Returns a waypoint at each "lon:lat" pair of points, numbered in order.
+     */
+    private static IDeque<Location> points(String points) {
+        IDeque<Location> locs = new LinkedDeque<>();
+        for (String point : points.split(" ")) {
+            if (!point.isEmpty()) {
+                String[] coords = point.split(":");
+                locs.addBack(new Location(locs.size(), Double.parseDouble(coords[1]), Double.parseDouble(coords[0]),
+                        null, null, null, null, "waypoint"));
+            }
+        }
+        return locs;
+    }
+
+    @DisplayName("Tests the convex hull of small point sets")
+    @ParameterizedTest(name = "Test hull of [{0}]")
+    @CsvSource({
+            "'', ''",
+            "1:2, 1:2",
+            "3:1 1:2, 1:2 3:1",
+            "1:1 1:1 1:1, 1:1",
+            "2:2 0:0 2:2 0:0, 0:0 2:2",
+            "0:0 2:2 1:1 3:3 4:4, 0:0 4:4",
+            "1:3 1:0 1:2, 1:0 1:3",
+            "0:0 2:0 1:2, 0:0 2:0 1:2",
+            "1:1 0:0 1:0 0:1 0.5:0 0.5:0.5 1:1 0:0.5, 0:0 1:0 1:1 0:1",
+    })
+    public void convexHullTest(String locs, String corners) {
+        IDeque<Location> expected = points(corners);
+        IDeque<Location> hull = ConvexHull.of(points(locs));
+        assertEquals(expected.size(), hull.size(), "Hull of [" + locs + "] should have corners [" + corners + "]");
+        for (Location corner : hull) {
+            Location e = expected.removeFront();
+            assertEquals(e.lat, corner.lat, "Hull of [" + locs + "] should have corners [" + corners + "]");
+            assertEquals(e.lon, corner.lon, "Hull of [" + locs + "] should have corners [" + corners + "]");
+        }
+    }
+
+    @DisplayName("Tests that the convex hull of random points encloses them all")
+    @Test
+    public void randomConvexHullTest() {
+        Random r = new Random(44);
+        for (int trial = 0; trial < 200; trial++) {
+            IDeque<Location> locs = new LinkedDeque<>();
+            Set<Location> input = new HashSet<>();
+            int n = 3 + r.nextInt(200);
+            for (int i = 0; i < n; i++) {
+                // a coarse grid so that duplicate and collinear points are common
+                Location loc = new Location(i, r.nextInt(20), r.nextInt(20), null, null, null, null, "waypoint");
+                locs.addBack(loc);
+                input.add(loc);
+            }
+
+            List<Location> hull = new ArrayList<>();
+            for (Location corner : ConvexHull.of(locs)) {
+                assertTrue(input.contains(corner), "Corners should be input locations");
+                hull.add(corner);
+            }
+            if (hull.size() < 3) {
+                continue;
+            }
+            for (int i = 0; i < hull.size(); i++) {
+                Location a = hull.get(i);
+                Location b = hull.get((i + 1) % hull.size());
+                Location c = hull.get((i + 2) % hull.size());
+                assertTrue(cross(a, b, c) > 0, "Corners should turn strictly counterclockwise");
+                for (Location loc : locs) {
+                    assertTrue(cross(a, b, loc) >= 0, "Every location should be inside the hull");
+                }
+            }
+        }
+    }
+
+    private static double cross(Location a, Location b, Location c) {
+        return (b.lon - a.lon) * (c.lat - a.lat) - (b.lat - a.lat) * (c.lon - a.lon);
+    }
+}